@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import com.baidu.hugegraph.util.E;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * The codec used to compress backup files, the codec of a file is detected
+ * by its suffix when reading, a file without known suffix is read as text
+ */
+public enum CompressCodec {
+
+    NONE("none", ""),
+
+    ZIP("zip", ".zip"),
+
+    GZIP("gzip", ".gz"),
+
+    LZ4("lz4", ".lz4"),
+
+    ZSTD("zstd", ".zst");
+
+    public static final int DEFAULT_LEVEL = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LZ4_BLOCK_SIZE = 64 * 1024;
+    private static final int LZ4_FAST_LEVEL = 1;
+    private static final int ZSTD_DEFAULT_LEVEL = 3;
+    private static final int DEFLATE_MAX_LEVEL = 9;
+    private static final int LZ4_MAX_LEVEL = 17;
+    private static final int ZSTD_MAX_LEVEL = 22;
+
+    private final String name;
+    private final String suffix;
+
+    CompressCodec(String name, String suffix) {
+        this.name = name;
+        this.suffix = suffix;
+    }
+
+    public String string() {
+        return this.name;
+    }
+
+    public String suffix() {
+        return this.suffix;
+    }
+
+    /**
+     * Check the compress level before writing any file, since an invalid
+     * level only fails when the stream of the first file is created
+     */
+    public void checkLevel(int level) {
+        if (level == DEFAULT_LEVEL) {
+            return;
+        }
+        int min;
+        int max;
+        switch (this) {
+            case NONE:
+                return;
+            case ZIP:
+            case GZIP:
+                min = 0;
+                max = DEFLATE_MAX_LEVEL;
+                break;
+            case LZ4:
+                min = LZ4_FAST_LEVEL;
+                max = LZ4_MAX_LEVEL;
+                break;
+            case ZSTD:
+                min = 1;
+                max = ZSTD_MAX_LEVEL;
+                break;
+            default:
+                throw new AssertionError(String.format(
+                          "Unknown compress codec '%s'", this));
+        }
+        E.checkArgument(level >= min && level <= max,
+                        "Invalid compress level %s for %s, valid value is " +
+                        "%s or in [%s, %s]", level, this.name,
+                        DEFAULT_LEVEL, min, max);
+    }
+
+    /**
+     * Wrap the stream to compress with the level, DEFAULT_LEVEL means the
+     * default level of the codec, the zip entry is named with the file
+     */
+    public OutputStream compress(OutputStream os, String file, int level)
+                                 throws IOException {
+        switch (this) {
+            case NONE:
+                return os;
+            case ZIP:
+                ZipOutputStream zos = new ZipOutputStream(os);
+                if (level != DEFAULT_LEVEL) {
+                    zos.setLevel(level);
+                }
+                zos.putNextEntry(new ZipEntry(file));
+                return zos;
+            case GZIP:
+                return new GZIPOutputStream(os, BUFFER_SIZE) {
+                    {
+                        this.def.setLevel(level == DEFAULT_LEVEL ?
+                                          Deflater.DEFAULT_COMPRESSION :
+                                          level);
+                    }
+                };
+            case LZ4:
+                LZ4Factory factory = LZ4Factory.fastestInstance();
+                // The levels higher than 1 use the slow LZ4 HC compressor
+                return new LZ4BlockOutputStream(os, LZ4_BLOCK_SIZE,
+                                                level <= LZ4_FAST_LEVEL ?
+                                                factory.fastCompressor() :
+                                                factory.highCompressor(level));
+            case ZSTD:
+                return new ZstdOutputStream(os, level == DEFAULT_LEVEL ?
+                                                ZSTD_DEFAULT_LEVEL : level);
+            default:
+                throw new AssertionError(String.format(
+                          "Unknown compress codec '%s'", this));
+        }
+    }
+
+    public InputStream decompress(InputStream is, String file)
+                                  throws IOException {
+        switch (this) {
+            case NONE:
+                return is;
+            case ZIP:
+                ZipInputStream zis = new ZipInputStream(is);
+                E.checkState(zis.getNextEntry() != null,
+                             "Invalid zip file '%s'", file);
+                return zis;
+            case GZIP:
+                return new GZIPInputStream(is, BUFFER_SIZE);
+            case LZ4:
+                return new LZ4BlockInputStream(is);
+            case ZSTD:
+                return new ZstdInputStream(is);
+            default:
+                throw new AssertionError(String.format(
+                          "Unknown compress codec '%s'", this));
+        }
+    }
+
+    public static CompressCodec fromName(String name) {
+        for (CompressCodec codec : CompressCodec.values()) {
+            if (codec.name.equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                  "Invalid compress codec '%s', valid value is " +
+                  "[none, zip, gzip, lz4, zstd]", name));
+    }
+
+    public static CompressCodec fromFile(String file) {
+        for (CompressCodec codec : CompressCodec.values()) {
+            if (codec != NONE && file.endsWith(codec.suffix)) {
+                return codec;
+            }
+        }
+        // Keep compatible with version before 1.3.0, which backup data no zip
+        return NONE;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.util.Arrays;
+
+import com.baidu.hugegraph.util.E;
+
+/**
+ * Limit the number of in-flight requests by AIMD: the limit is increased by
+ * one after a window of requests whose p99 latency is within the target,
+ * and is decreased multiplicatively if the p99 latency exceeds the target
+ * or a request times out.
+ */
+public class ConcurrencyLimiter {
+
+    private static final int WINDOW_SIZE = 100;
+    private static final double BACKOFF_RATIO = 0.7;
+    private static final double PERCENTILE = 0.99;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTarget;
+    private final long[] window;
+
+    private double limit;
+    private int inFlight;
+    private int samples;
+
+    public ConcurrencyLimiter(int initLimit, int maxLimit,
+                              long latencyTarget) {
+        E.checkArgument(initLimit > 0,
+                        "The initial concurrency must be > 0, but got %s",
+                        initLimit);
+        E.checkArgument(maxLimit > 0,
+                        "The max concurrency must be > 0, but got %s",
+                        maxLimit);
+        E.checkArgument(latencyTarget > 0L,
+                        "The latency target must be > 0, but got %s",
+                        latencyTarget);
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.latencyTarget = latencyTarget;
+        this.window = new long[WINDOW_SIZE];
+        // Start from the initial limit and probe upwards
+        this.limit = Math.min(initLimit, maxLimit);
+        this.inFlight = 0;
+        this.samples = 0;
+    }
+
+    public synchronized void acquire() throws InterruptedException {
+        while (this.inFlight >= (int) this.limit) {
+            this.wait();
+        }
+        this.inFlight++;
+    }
+
+    /**
+     * Release the permit with the latency in ms of the request, a timed out
+     * request cuts the limit at once
+     */
+    public synchronized void release(long latency, boolean timeout) {
+        this.inFlight--;
+        if (timeout) {
+            this.decrease();
+        } else {
+            this.window[this.samples++] = latency;
+            if (this.samples == WINDOW_SIZE) {
+                long[] latencies = Arrays.copyOf(this.window, WINDOW_SIZE);
+                Arrays.sort(latencies);
+                long p99 = latencies[(int) (WINDOW_SIZE * PERCENTILE) - 1];
+                if (p99 > this.latencyTarget) {
+                    this.decrease();
+                } else {
+                    this.limit = Math.min(this.maxLimit, this.limit + 1);
+                }
+                this.samples = 0;
+            }
+        }
+        this.notifyAll();
+    }
+
+    public synchronized int limit() {
+        return (int) this.limit;
+    }
+
+    public int maxLimit() {
+        return this.maxLimit;
+    }
+
+    private void decrease() {
+        this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+        // The samples before the decrease don't reflect the new limit
+        this.samples = 0;
+    }
+}
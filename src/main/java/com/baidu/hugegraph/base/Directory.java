@@ -20,6 +20,7 @@
 package com.baidu.hugegraph.base;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
@@ -29,30 +30,71 @@ import com.baidu.hugegraph.util.E;
 public abstract class Directory {
 
     private final String directory;
+    private CompressCodec codec;
+    private int level;
 
     public Directory(String directory) {
         E.checkArgument(directory != null && !directory.isEmpty(),
                         "Directory can't be null or empty");
         this.directory = directory;
+        this.codec = CompressCodec.ZIP;
+        this.level = CompressCodec.DEFAULT_LEVEL;
     }
 
     public String directory() {
         return this.directory;
     }
 
-    public abstract List<String> files();
+    public CompressCodec codec() {
+        return this.codec;
+    }
+
+    /**
+     * Set the codec and level used to write compressed files, the files
+     * are always read with the codec detected by their suffix
+     */
+    public void codec(CompressCodec codec, int level) {
+        E.checkArgument(codec != null, "The compress codec can't be null");
+        this.codec = codec;
+        this.level = level;
+    }
+
+    public String suffix(boolean compress) {
+        return compress ? this.codec.suffix() : "";
+    }
+
+    /**
+     * Returns the path of directory which doesn't depend on the working
+     * directory, so that it can be recorded for other runs
+     */
+    public abstract String absoluteDirectory();
 
-    public abstract String suffix(boolean compress);
+    public abstract List<String> files();
 
     public abstract void ensureDirectoryExist(boolean create);
 
     public abstract void removeDirectory();
 
+    public abstract void removeFile(String file);
+
     public abstract InputStream inputStream(String path);
 
     public abstract OutputStream outputStream(String path, boolean compress,
                                               boolean override);
 
+    protected OutputStream compress(OutputStream os, String file,
+                                    boolean compress) throws IOException {
+        if (!compress) {
+            return os;
+        }
+        return this.codec.compress(os, file, this.level);
+    }
+
+    protected InputStream decompress(InputStream is, String file)
+                                     throws IOException {
+        return CompressCodec.fromFile(file).decompress(is, file);
+    }
+
     public static void closeAndIgnoreException(Closeable stream) {
         if (stream == null) {
             return;
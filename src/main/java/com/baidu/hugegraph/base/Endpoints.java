@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.baidu.hugegraph.driver.GraphManager;
+import com.baidu.hugegraph.driver.HugeClient;
+import com.baidu.hugegraph.driver.TraverserManager;
+import com.baidu.hugegraph.util.E;
+
+/**
+ * The endpoints of the servers which serve the same graph. A request is sent
+ * to the healthy endpoint with the least in-flight requests weighted by the
+ * moving average of its latency, so the requests move off the slow ones,
+ * and the ties are broken in round-robin. An endpoint failed by a connection
+ * or server error is skipped for a while, which is doubled on consecutive
+ * failures.
+ */
+public class Endpoints {
+
+    private static final long MIN_DOWN_TIME = 1000L;
+    private static final long MAX_DOWN_TIME = 30000L;
+    // The weight of the latest latency in the moving average
+    private static final double LATENCY_DECAY = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final AtomicInteger next;
+
+    public Endpoints(List<Endpoint> endpoints) {
+        E.checkArgument(!endpoints.isEmpty(), "The endpoints can't be empty");
+        this.endpoints = endpoints;
+        this.next = new AtomicInteger(0);
+    }
+
+    public int size() {
+        return this.endpoints.size();
+    }
+
+    public List<Endpoint> all() {
+        return this.endpoints;
+    }
+
+    /**
+     * Choose an endpoint for a request other than the excluded one if
+     * possible, the one to recover earliest is chosen if all are down
+     */
+    public Endpoint acquire(Endpoint excluded) {
+        long now = System.currentTimeMillis();
+        int size = this.endpoints.size();
+        int start = Math.floorMod(this.next.getAndIncrement(), size);
+        Endpoint chosen = null;
+        Endpoint recovering = null;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = this.endpoints.get((start + i) % size);
+            if (endpoint == excluded) {
+                continue;
+            }
+            if (!endpoint.healthy(now)) {
+                if (recovering == null ||
+                    endpoint.downUntil < recovering.downUntil) {
+                    recovering = endpoint;
+                }
+                continue;
+            }
+            if (chosen == null || endpoint.load() < chosen.load()) {
+                chosen = endpoint;
+            }
+        }
+        if (chosen == null) {
+            if (excluded != null && excluded.healthy(now)) {
+                chosen = excluded;
+            } else {
+                chosen = recovering != null ? recovering : excluded;
+            }
+        }
+        chosen.inFlight.getAndIncrement();
+        chosen.requests.getAndIncrement();
+        return chosen;
+    }
+
+    /**
+     * Release the endpoint after the request with its latency in ms, the
+     * endpoint is marked down if the request failed for the endpoint rather
+     * than the request itself
+     */
+    public void release(Endpoint endpoint, long latency, boolean failed) {
+        endpoint.inFlight.getAndDecrement();
+        synchronized (endpoint) {
+            endpoint.latency = endpoint.latency == 0.0D ? latency :
+                               endpoint.latency * (1 - LATENCY_DECAY) +
+                               latency * LATENCY_DECAY;
+            if (failed) {
+                int shift = Math.min(endpoint.failures++, 30);
+                long downTime = Math.min(MAX_DOWN_TIME, MIN_DOWN_TIME << shift);
+                endpoint.downUntil = System.currentTimeMillis() + downTime;
+                endpoint.failureCounter.getAndIncrement();
+            } else {
+                endpoint.failures = 0;
+                endpoint.downUntil = 0L;
+            }
+        }
+    }
+
+    public static class Endpoint {
+
+        private final String url;
+        private final Function<String, HugeClient> clientBuilder;
+        private final Function<String, ShardScanner> scannerBuilder;
+        private volatile HugeClient client;
+        private volatile ShardScanner scanner;
+
+        private final AtomicInteger inFlight;
+        private final AtomicLong requests;
+        private final AtomicLong failureCounter;
+        private int failures;
+        private volatile long downUntil;
+        private volatile double latency;
+
+        public Endpoint(String url, HugeClient client,
+                        Function<String, HugeClient> clientBuilder,
+                        Function<String, ShardScanner> scannerBuilder) {
+            this.url = url;
+            this.client = client;
+            this.clientBuilder = clientBuilder;
+            this.scannerBuilder = scannerBuilder;
+            this.inFlight = new AtomicInteger(0);
+            this.requests = new AtomicLong(0L);
+            this.failureCounter = new AtomicLong(0L);
+            this.failures = 0;
+            this.downUntil = 0L;
+            this.latency = 0.0D;
+        }
+
+        public String url() {
+            return this.url;
+        }
+
+        /**
+         * Returns the client of the endpoint, which is built on the first
+         * request so that an endpoint down at startup doesn't fail the task
+         */
+        public HugeClient client() {
+            if (this.client == null) {
+                synchronized (this) {
+                    if (this.client == null) {
+                        this.client = this.clientBuilder.apply(this.url);
+                    }
+                }
+            }
+            return this.client;
+        }
+
+        public ShardScanner scanner() {
+            if (this.scanner == null) {
+                synchronized (this) {
+                    if (this.scanner == null) {
+                        this.scanner = this.scannerBuilder.apply(this.url);
+                    }
+                }
+            }
+            return this.scanner;
+        }
+
+        public TraverserManager traverser() {
+            return this.client().traverser();
+        }
+
+        public GraphManager graph() {
+            return this.client().graph();
+        }
+
+        public long requests() {
+            return this.requests.get();
+        }
+
+        public long failures() {
+            return this.failureCounter.get();
+        }
+
+        public boolean healthy(long now) {
+            return this.downUntil <= now;
+        }
+
+        /*
+         * The expected time to serve a new request, the endpoint without
+         * latency sampled is preferred to be probed
+         */
+        private double load() {
+            return (this.inFlight.get() + 1) * Math.max(this.latency, 1.0D);
+        }
+
+        public void close() {
+            if (this.client != null) {
+                this.client.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.url;
+        }
+    }
+}
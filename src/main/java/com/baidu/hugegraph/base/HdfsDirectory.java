@@ -25,9 +25,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -64,6 +61,12 @@ public class HdfsDirectory extends Directory {
         }
     }
 
+    @Override
+    public String absoluteDirectory() {
+        Path path = new Path(this.directory());
+        return this.fileSystem().makeQualified(path).toString();
+    }
+
     @Override
     public List<String> files() {
         FileSystem fs = this.fileSystem();
@@ -125,8 +128,14 @@ public class HdfsDirectory extends Directory {
     }
 
     @Override
-    public String suffix(boolean compress) {
-        return compress ? ".zip" : "";
+    public void removeFile(String file) {
+        FileSystem fs = this.fileSystem();
+        Path path = new Path(this.path(file));
+        try {
+            fs.delete(path, false);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to delete file '%s'", e, path);
+        }
     }
 
     @Override
@@ -134,18 +143,14 @@ public class HdfsDirectory extends Directory {
         String path = this.path(file);
         FileSystem fs = this.fileSystem();
         FSDataInputStream is = null;
-        ZipInputStream zis;
         Path source = new Path(path);
         try {
             is = fs.open(source);
-            zis = new ZipInputStream(is);
-            E.checkState(zis.getNextEntry() != null,
-                         "Invalid zip file '%s'", file);
-        } catch (IOException e) {
+            return this.decompress(is, file);
+        } catch (IOException | IllegalStateException e) {
             closeAndIgnoreException(is);
             throw new ClientException("Failed to read from %s", e, path);
         }
-        return zis;
     }
 
     @Override
@@ -154,7 +159,6 @@ public class HdfsDirectory extends Directory {
         String path = this.path(file + this.suffix(compress));
         FileSystem fs = this.fileSystem();
         FSDataOutputStream os = null;
-        ZipOutputStream zos = null;
         Path dest = new Path(path);
         try {
             if (override) {
@@ -162,18 +166,11 @@ public class HdfsDirectory extends Directory {
             } else {
                 os = fs.append(dest);
             }
-            if (!compress) {
-                return os;
-            }
-            zos = new ZipOutputStream(os);
-            ZipEntry entry = new ZipEntry(file);
-            zos.putNextEntry(entry);
+            return this.compress(os, file, compress);
         } catch (IOException e) {
-            closeAndIgnoreException(zos);
             closeAndIgnoreException(os);
             throw new ClientException("Failed to write to %s", e, path);
         }
-        return zos;
     }
 
     public static HdfsDirectory constructDir(String directory, String graph,
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+
+import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.util.E;
+
+/**
+ * The journal of a restore records the keys of schema types, shards and
+ * files whose elements have all been acknowledged by the target graph, one
+ * key per line, so that a resumed restore can skip them.
+ */
+public class Journal {
+
+    public static final String RESTORE = "journal_restore";
+
+    private final Directory directory;
+    private final String file;
+    private final Set<String> keys;
+    private OutputStream os;
+
+    public Journal(Directory directory, String file) {
+        this.directory = directory;
+        this.file = file;
+        this.keys = ConcurrentHashMap.newKeySet();
+    }
+
+    public boolean exists() {
+        return this.directory.files().contains(this.file);
+    }
+
+    /**
+     * Open the journal to append, the keys recorded are kept if resume,
+     * otherwise the journal is cleared
+     */
+    public synchronized void open(boolean resume) {
+        this.close();
+        this.keys.clear();
+        if (resume) {
+            this.keys.addAll(this.read());
+        }
+        // Rewrite to drop the line torn by a crash if any
+        this.os = this.directory.outputStream(this.file, false, true);
+        for (String key : this.keys) {
+            this.write(key);
+        }
+    }
+
+    public boolean contains(String key) {
+        return this.keys.contains(key);
+    }
+
+    public int size() {
+        return this.keys.size();
+    }
+
+    public synchronized void append(String key) {
+        E.checkState(this.os != null, "The journal '%s' is not opened",
+                     this.file);
+        if (this.keys.add(key)) {
+            this.write(key);
+        }
+    }
+
+    public synchronized void close() {
+        Directory.closeAndIgnoreException(this.os);
+        this.os = null;
+    }
+
+    private void write(String key) {
+        try {
+            this.os.write(key.getBytes(API.CHARSET));
+            this.os.write('\n');
+            this.os.flush();
+        } catch (IOException e) {
+            throw new ToolsException("Failed to write journal '%s'",
+                                     e, this.file);
+        }
+    }
+
+    private Set<String> read() {
+        Set<String> keys = ConcurrentHashMap.newKeySet();
+        if (!this.exists()) {
+            return keys;
+        }
+        String content;
+        try (InputStream is = this.directory.inputStream(this.file)) {
+            content = IOUtils.toString(is, API.CHARSET);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to read journal '%s'",
+                                     e, this.file);
+        }
+        // The part after the last line break is torn by a crash
+        String[] lines = content.split("\n", -1);
+        for (int i = 0; i < lines.length - 1; i++) {
+            if (!lines[i].isEmpty()) {
+                keys.add(lines[i]);
+            }
+        }
+        return keys;
+    }
+}
@@ -28,9 +28,6 @@ import java.io.OutputStream;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 
@@ -45,6 +42,12 @@ public class LocalDirectory extends Directory {
         super(directory);
     }
 
+    @Override
+    public String absoluteDirectory() {
+        return Paths.get(this.directory()).toAbsolutePath().normalize()
+                    .toString();
+    }
+
     @Override
     public List<String> files() {
         List<String> fileList = new ArrayList<>(8);
@@ -68,49 +71,33 @@ public class LocalDirectory extends Directory {
     }
 
     @Override
-    public void ensureDirectoryExist(boolean create) {
-        ensureDirectoryExist(this.directory(), create);
+    public void removeFile(String file) {
+        File path = Paths.get(this.directory(), file).toFile();
+        try {
+            FileUtils.forceDelete(path);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to delete file '%s'",
+                                     e, path.getAbsolutePath());
+        }
     }
 
     @Override
-    public String suffix(boolean compress) {
-        return compress ? ".zip" : "";
+    public void ensureDirectoryExist(boolean create) {
+        ensureDirectoryExist(this.directory(), create);
     }
 
     @Override
     public InputStream inputStream(String file) {
-        if (file.endsWith(this.suffix(true))) {
-            return this.zipInputStream(file);
-        }
-        // Keep compatible with version before 1.3.0, which backup data no zip
-        return this.textInputStream(file);
-    }
-
-    private ZipInputStream zipInputStream(String file) {
         String path = Paths.get(this.directory(), file).toString();
         InputStream is = null;
-        ZipInputStream zis;
         try {
             is = new FileInputStream(path);
-            zis = new ZipInputStream(is);
-            E.checkState(zis.getNextEntry() != null,
-                         "Invalid zip file '%s'", file);
+            return this.decompress(is, file);
         } catch (IOException | IllegalStateException e) {
             closeAndIgnoreException(is);
             throw new ClientException("Failed to read from local file: %s",
                                       e, path);
         }
-        return zis;
-    }
-
-    private InputStream textInputStream(String file) {
-        String path = Paths.get(this.directory(), file).toString();
-        try {
-            return new FileInputStream(path);
-        } catch (IOException e) {
-            throw new ClientException("Failed to read from local file: %s",
-                                      e, path);
-        }
     }
 
     @Override
@@ -119,22 +106,14 @@ public class LocalDirectory extends Directory {
         String path = Paths.get(this.directory(), file + this.suffix(compress))
                            .toString();
         FileOutputStream os = null;
-        ZipOutputStream zos = null;
         try {
             os = new FileOutputStream(path, !override);
-            if (!compress) {
-                return os;
-            }
-            zos = new ZipOutputStream(os);
-            ZipEntry entry = new ZipEntry(file);
-            zos.putNextEntry(entry);
+            return this.compress(os, file, compress);
         } catch (IOException e) {
-            closeAndIgnoreException(zos);
             closeAndIgnoreException(os);
             throw new ClientException("Failed to write to local file: %s",
                                       e, path);
         }
-        return zos;
     }
 
     public static LocalDirectory constructDir(String directory, String graph) {
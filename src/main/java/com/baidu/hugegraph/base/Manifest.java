@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.baidu.hugegraph.util.E;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The manifest of a backup records each completed shard and the range of
+ * logical(uncompressed) bytes it occupies in a data file, one json per line.
+ * The shard of an incremental backup which is unchanged since the base backup
+ * refers to the data file in the directory of base backup.
+ */
+public class Manifest {
+
+    public static final String PREFIX = "manifest_";
+    public static final String SHARDS_PREFIX = "shards_";
+
+    private final Directory directory;
+    private final ObjectMapper mapper;
+    private final String file;
+    private final String shardsFile;
+    private OutputStream os;
+
+    public Manifest(Directory directory, ObjectMapper mapper, HugeType type) {
+        this.directory = directory;
+        this.mapper = mapper;
+        this.file = PREFIX + type.string();
+        this.shardsFile = SHARDS_PREFIX + type.string();
+    }
+
+    public String file() {
+        return this.file;
+    }
+
+    public boolean exists() {
+        return this.directory.files().contains(this.file);
+    }
+
+    public List<Entry> read() {
+        List<Entry> entries = new ArrayList<>();
+        if (!this.exists()) {
+            return entries;
+        }
+        InputStream is = this.directory.inputStream(this.file);
+        try (InputStreamReader isr = new InputStreamReader(is, API.CHARSET);
+             BufferedReader reader = new BufferedReader(isr)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    entries.add(this.mapper.readValue(line, Entry.class));
+                } catch (IOException e) {
+                    // The last line may be torn by a crash, ignore it
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new ToolsException("Failed to read manifest '%s'",
+                                     e, this.file);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns all the shards of the backup, including the failed ones,
+     * or null if the shards are not recorded
+     */
+    public List<Shard> readShards() {
+        if (!this.directory.files().contains(this.shardsFile)) {
+            return null;
+        }
+        try (InputStream is = this.directory.inputStream(this.shardsFile)) {
+            return this.mapper.readValue(is,
+                                         new TypeReference<List<Shard>>() {});
+        } catch (IOException e) {
+            throw new ToolsException("Failed to read shards file '%s'",
+                                     e, this.shardsFile);
+        }
+    }
+
+    public void writeShards(List<Shard> shards) {
+        try (OutputStream os = this.directory.outputStream(this.shardsFile,
+                                                           false, true)) {
+            os.write(this.mapper.writeValueAsBytes(shards));
+        } catch (IOException e) {
+            throw new ToolsException("Failed to write shards file '%s'",
+                                     e, this.shardsFile);
+        }
+    }
+
+    public synchronized void open(boolean append) {
+        this.close();
+        boolean override = !append || !this.exists();
+        this.os = this.directory.outputStream(this.file, false, override);
+    }
+
+    public synchronized void append(Entry entry) {
+        E.checkState(this.os != null, "The manifest '%s' is not opened",
+                     this.file);
+        try {
+            this.os.write(this.mapper.writeValueAsBytes(entry));
+            this.os.write('\n');
+            this.os.flush();
+        } catch (IOException e) {
+            throw new ToolsException("Failed to write manifest '%s'",
+                                     e, this.file);
+        }
+    }
+
+    public synchronized void rewrite(List<Entry> entries) {
+        this.open(false);
+        for (Entry entry : entries) {
+            this.append(entry);
+        }
+    }
+
+    public synchronized void close() {
+        Directory.closeAndIgnoreException(this.os);
+        this.os = null;
+    }
+
+    public static String shardKey(Shard shard) {
+        return shard.start() + "~" + shard.end();
+    }
+
+    public static class Entry {
+
+        @JsonProperty("shard")
+        public Shard shard;
+        @JsonProperty("file")
+        public String file;
+        @JsonProperty("begin")
+        public long begin;
+        @JsonProperty("end")
+        public long end;
+        @JsonProperty("count")
+        public long count;
+        @JsonProperty("hash")
+        public String hash;
+        // The directory of data file, null means the directory of manifest
+        @JsonProperty("directory")
+        public String directory;
+
+        public Entry() {
+        }
+
+        public Entry(Shard shard, String file, long begin, long end,
+                     long count, String hash) {
+            this.shard = shard;
+            this.file = file;
+            this.begin = begin;
+            this.end = end;
+            this.count = count;
+            this.hash = hash;
+            this.directory = null;
+        }
+
+        public long length() {
+            return this.end - this.begin;
+        }
+
+        public Entry moveTo(String file, long begin) {
+            return new Entry(this.shard, file, begin,
+                             begin + this.length(), this.count, this.hash);
+        }
+
+        /**
+         * Returns the entry referred by an incremental backup of the backup
+         * in the directory
+         */
+        public Entry inherit(String directory) {
+            Entry entry = new Entry(this.shard, this.file, this.begin,
+                                    this.end, this.count, this.hash);
+            entry.directory = this.directory != null ?
+                              this.directory : directory;
+            return entry;
+        }
+    }
+}
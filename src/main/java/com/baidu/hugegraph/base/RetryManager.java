@@ -19,56 +19,255 @@
 
 package com.baidu.hugegraph.base;
 
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+import com.baidu.hugegraph.exception.ServerException;
 import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.rest.SerializeException;
 
 public class RetryManager extends ToolManager {
 
+    private static final int TASK_PERMITS_PER_THREAD = 2;
+    private static final int MAX_CONCURRENCY_PER_THREAD = 4;
+    private static final int MAX_SHOWN_TASKS = 3;
+
     private int CPUS = Runtime.getRuntime().availableProcessors();
     private int threadsNum = Math.min(10, Math.max(4, CPUS / 2));
     private ExecutorService pool;
     private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
     private int retry = 0;
+    private int retryDelay = 0;
+    private int maxRetryDelay = 0;
+    private final AtomicLong retryCounter = new AtomicLong(0);
+    private final AtomicLong fatalCounter = new AtomicLong(0);
+    private volatile ConcurrencyLimiter limiter;
+    private Semaphore taskPermits;
+    private boolean failFast = false;
+    private volatile Throwable failure;
+    private final Map<String, List<String>> taskErrors =
+                                            new LinkedHashMap<>();
 
     public RetryManager(ToolClient.ConnectionInfo info, String type) {
         super(info, type);
     }
 
     public void initExecutors() {
-        Printer.print("Init %s executors", this.threadsNum);
-        this.pool = Executors.newFixedThreadPool(this.threadsNum);
+        // The limiter can't grow beyond the threads to run requests
+        int threads = this.maxConcurrency();
+        Printer.print("Init %s executors", threads);
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.taskPermits = new Semaphore(threads * TASK_PERMITS_PER_THREAD);
     }
 
+    /**
+     * Returns the max number of requests in flight, which is the max limit
+     * of the concurrency limiter if enabled, the threads making requests
+     * should be started by it and the requests over the current limit wait
+     * for the permits of limiter
+     */
+    public int maxConcurrency() {
+        ConcurrencyLimiter limiter = this.limiter;
+        if (limiter == null) {
+            return this.threadsNum;
+        }
+        return Math.max(this.threadsNum, limiter.maxLimit());
+    }
+
+    /**
+     * Retry the failed call after an exponential backoff with jitter, the
+     * failure which can't be recovered by retrying is thrown at once
+     */
     public <R> R retry(Supplier<R> supplier, String description) {
         int retries = 0;
-        R r = null;
-        do {
+        while (true) {
             try {
-                r = supplier.get();
+                return this.limit(supplier);
             } catch (Exception e) {
-                if (retries == this.retry) {
+                boolean retryable = isRetryable(e);
+                if (!retryable) {
+                    this.fatalCounter.getAndIncrement();
+                }
+                if (!retryable || retries == this.retry) {
                     throw new ToolsException(
                               "Exception occurred while %s(after %s retries)",
-                              e, description, this.retry);
+                              e, description, retries);
                 }
-                // Ignore exception and retry
-                continue;
             }
-            break;
-        } while (retries++ < this.retry);
-        return r;
+            this.backoff(retries++, description);
+            this.retryCounter.getAndIncrement();
+        }
+    }
+
+    /**
+     * Retry the call on the endpoints of the graph, each attempt is sent to
+     * the least loaded healthy endpoint other than the one failed last time
+     */
+    public <R> R retry(Function<Endpoints.Endpoint, R> function,
+                       String description) {
+        Endpoints.Endpoint[] failed = new Endpoints.Endpoint[1];
+        return this.retry(() -> this.call(function, failed), description);
+    }
+
+    /**
+     * Call the function on an endpoint of the graph once under the
+     * concurrency limiter if enabled
+     */
+    public <R> R limit(Function<Endpoints.Endpoint, R> function) {
+        Endpoints.Endpoint[] failed = new Endpoints.Endpoint[1];
+        return this.limit(() -> this.call(function, failed));
+    }
+
+    private <R> R call(Function<Endpoints.Endpoint, R> function,
+                       Endpoints.Endpoint[] failed) {
+        Endpoints endpoints = this.client.endpoints();
+        Endpoints.Endpoint endpoint = endpoints.acquire(failed[0]);
+        long begin = System.currentTimeMillis();
+        try {
+            R result = function.apply(endpoint);
+            endpoints.release(endpoint, System.currentTimeMillis() - begin,
+                              false);
+            return result;
+        } catch (RuntimeException e) {
+            /*
+             * The timeout may be caused by the request like a large shard,
+             * which doesn't mean the endpoint is down, but its latency
+             * still makes the endpoint less preferred
+             */
+            endpoints.release(endpoint, System.currentTimeMillis() - begin,
+                              isRetryable(e) && !isTimeout(e));
+            failed[0] = endpoint;
+            throw e;
+        }
+    }
+
+    /**
+     * Call the supplier under the concurrency limiter if enabled
+     */
+    public <R> R limit(Supplier<R> supplier) {
+        ConcurrencyLimiter limiter = this.limiter;
+        if (limiter == null) {
+            return supplier.get();
+        }
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while waiting for " +
+                                     "concurrency limiter", e);
+        }
+        long begin = System.currentTimeMillis();
+        boolean timeout = false;
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            timeout = isTimeout(e);
+            throw e;
+        } finally {
+            limiter.release(System.currentTimeMillis() - begin, timeout);
+        }
+    }
+
+    private void backoff(int retries, String description) {
+        // Equal jitter: half of the delay is fixed and half is random
+        long delay = Math.min(this.maxRetryDelay,
+                              (long) this.retryDelay << Math.min(retries, 30));
+        long half = delay / 2;
+        delay = half + ThreadLocalRandom.current().nextLong(half + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while %s", e, description);
+        }
+    }
+
+    /*
+     * The timeout, connection failure, 5xx, 408 and 429 are retryable,
+     * other server errors and client side errors like invalid argument and
+     * serialization failure are not, unknown errors are retried anyway
+     */
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null && t.getCause() != t;
+             t = t.getCause()) {
+            if (t instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException ||
+                t instanceof SocketException) {
+                return true;
+            }
+            if (t instanceof ServerException) {
+                int status = ((ServerException) t).status();
+                return status >= 500 || status == 408 || status == 429;
+            }
+            if (t instanceof IllegalArgumentException ||
+                t instanceof SerializeException) {
+                return false;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Submit the task, blocks if there are too many tasks not finished, so
+     * that the tasks are submitted no faster than they are executed
+     */
     public void submit(Runnable task) {
-        this.futures.add(this.pool.submit(task));
+        this.checkFailure();
+        try {
+            this.taskPermits.acquire();
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while submitting task", e);
+        }
+        Future<?> future;
+        try {
+            future = this.pool.submit(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    // Ignore the errors of tasks canceled by fail fast
+                    if (!this.failed()) {
+                        this.taskFailed("running task", e);
+                    }
+                } finally {
+                    this.taskPermits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.taskPermits.release();
+            throw e;
+        }
+        this.futures.add(future);
+        if (this.failure != null) {
+            future.cancel(true);
+        }
+        // Only the unfinished tasks are kept to be waited or canceled
+        this.futures.removeIf(Future::isDone);
     }
 
     public void awaitTasks() {
@@ -76,12 +275,82 @@ public class RetryManager extends ToolManager {
         while ((future = this.futures.poll()) != null) {
             try {
                 future.get();
+            } catch (CancellationException ignored) {
+                // Canceled due to the failure of another task
             } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                this.taskFailed("waiting task", e);
+            }
+        }
+        this.checkFailure();
+        this.printTaskErrors();
+    }
+
+    /**
+     * Record the failure of a task, which is reported in aggregate when the
+     * tasks are awaited. The outstanding tasks are canceled if fail fast.
+     */
+    public void taskFailed(String description, Throwable e) {
+        String message = e.getMessage();
+        if (message != null && message.indexOf('\n') >= 0) {
+            message = message.substring(0, message.indexOf('\n'));
+        }
+        String key = e.getClass().getSimpleName() + ": " + message;
+        synchronized (this.taskErrors) {
+            this.taskErrors.computeIfAbsent(key, k -> new ArrayList<>())
+                           .add(description);
+        }
+        if (this.failFast && this.failure == null) {
+            synchronized (this) {
+                if (this.failure == null) {
+                    this.failure = e;
+                    for (Future<?> future : this.futures) {
+                        future.cancel(true);
+                    }
+                }
             }
         }
     }
 
+    public boolean failed() {
+        return this.failure != null;
+    }
+
+    private void checkFailure() {
+        if (this.failure != null) {
+            this.printTaskErrors();
+            throw new ToolsException("Canceled the tasks since a task " +
+                                     "failed: %s", this.failure,
+                                     this.failure.getMessage());
+        }
+    }
+
+    private void printTaskErrors() {
+        synchronized (this.taskErrors) {
+            if (this.taskErrors.isEmpty()) {
+                return;
+            }
+            int total = 0;
+            for (List<String> tasks : this.taskErrors.values()) {
+                total += tasks.size();
+            }
+            Printer.print("%s tasks failed with %s kinds of errors:",
+                          total, this.taskErrors.size());
+            for (Map.Entry<String, List<String>> e :
+                 this.taskErrors.entrySet()) {
+                List<String> tasks = e.getValue();
+                Printer.print("  %s time(s): %s", tasks.size(), e.getKey());
+                int shown = Math.min(tasks.size(), MAX_SHOWN_TASKS);
+                for (String task : tasks.subList(0, shown)) {
+                    Printer.print("    while %s", task);
+                }
+                if (tasks.size() > shown) {
+                    Printer.print("    ...");
+                }
+            }
+            this.taskErrors.clear();
+        }
+    }
+
     public void shutdown(String taskType) {
         if (this.pool == null) {
             return;
@@ -99,10 +368,45 @@ public class RetryManager extends ToolManager {
         return this.retry;
     }
 
+    public void failFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
     public void retry(int retry) {
         this.retry = retry;
     }
 
+    public void retryDelay(int retryDelay, int maxRetryDelay) {
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    /**
+     * Limit the in-flight requests adaptively, starting from the number of
+     * threads up to maxConcurrency, or MAX_CONCURRENCY_PER_THREAD times the
+     * number of threads if it's not positive. It must be called before
+     * initExecutors() to size the executors to the max concurrency.
+     */
+    public void adaptiveConcurrency(int maxConcurrency, long latencyTarget) {
+        if (maxConcurrency <= 0) {
+            maxConcurrency = this.threadsNum * MAX_CONCURRENCY_PER_THREAD;
+        }
+        this.limiter = new ConcurrencyLimiter(this.threadsNum, maxConcurrency,
+                                              latencyTarget);
+    }
+
+    public ConcurrencyLimiter limiter() {
+        return this.limiter;
+    }
+
+    public long retryCounter() {
+        return this.retryCounter.get();
+    }
+
+    public long fatalCounter() {
+        return this.fatalCounter.get();
+    }
+
     public int threadsNum() {
         return this.threadsNum;
     }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.commons.io.IOUtils;
+
+import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.exception.ServerException;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Scan the vertices or edges of a shard by the REST API directly, the
+ * elements in response body are copied token by token into lines of backup
+ * format without being bound to Vertex or Edge objects, and each line is
+ * written to the output once it's completed
+ */
+public class ShardScanner {
+
+    // Same as the default page limit of TraverserManager
+    private static final long PAGE_LIMIT = 100000L;
+    private static final int LBUF_SIZE = 1024;
+    private static final byte[] LINE_END = "]}\n".getBytes(
+                                           StandardCharsets.UTF_8);
+    private static final String ID = "id";
+
+    private final String url;
+    private final String authorization;
+    private final int timeout;
+    private final SSLSocketFactory sslSocketFactory;
+    private final JsonFactory factory;
+
+    public ShardScanner(String url, String graph, String username,
+                        String password, int timeout, String trustStoreFile,
+                        String trustStorePassword) {
+        String base = url.endsWith("/") ? url : url + "/";
+        this.url = base + "graphs/" + encode(graph) + "/traversers/";
+        if (username == null || username.isEmpty()) {
+            this.authorization = null;
+        } else {
+            String token = username + ":" + password;
+            this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                                 token.getBytes(StandardCharsets.UTF_8));
+        }
+        this.timeout = timeout * 1000;
+        this.sslSocketFactory = url.startsWith("https") ?
+                                sslSocketFactory(trustStoreFile,
+                                                 trustStorePassword) : null;
+        this.factory = new JsonFactory();
+        this.factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // The separators of elements in a line are written by scanner
+        this.factory.setRootValueSeparator(null);
+    }
+
+    /**
+     * Scan a page of the shard into output, page null means no paging, each
+     * line holds at most batch elements. The elements with id in written are
+     * skipped, and the ids of a line are added to it once it's written, so
+     * that a retry of the page doesn't write them again.
+     */
+    public Page scan(HugeType type, Shard shard, String page, int batch,
+                     Set<Object> written, OutputStream out) {
+        assert type == HugeType.VERTEX || type == HugeType.EDGE;
+        StringBuilder path = new StringBuilder(this.url);
+        path.append(type.string()).append("/scan")
+            .append("?start=").append(encode(shard.start()))
+            .append("&end=").append(encode(shard.end()));
+        if (page != null) {
+            path.append("&page=").append(encode(page))
+                .append("&page_limit=").append(PAGE_LIMIT);
+        }
+
+        // The connection is kept alive for next page by closing the stream
+        try {
+            HttpURLConnection conn = this.open(path.toString());
+            int status = conn.getResponseCode();
+            if (status >= 400) {
+                throw serverException(conn, status, type, shard);
+            }
+            try (InputStream is = conn.getInputStream()) {
+                return this.read(type, is, batch, written, out);
+            }
+        } catch (IOException e) {
+            throw new ToolsException("Failed to scan %s of shard %s",
+                                     e, type.string(), shard);
+        }
+    }
+
+    /*
+     * The status is kept for the retry to tell the errors of request from
+     * the errors of server
+     */
+    private static ServerException serverException(HttpURLConnection conn,
+                                                   int status, HugeType type,
+                                                   Shard shard)
+                                                   throws IOException {
+        String message = null;
+        try (InputStream es = conn.getErrorStream()) {
+            if (es != null) {
+                message = IOUtils.toString(es, API.CHARSET);
+            }
+        }
+        ServerException e = new ServerException("Failed to scan %s of " +
+                                                "shard %s, status %s: %s",
+                                                type.string(), shard,
+                                                status, message);
+        e.status(status);
+        return e;
+    }
+
+    private Page read(HugeType type, InputStream is, int batch,
+                      Set<Object> written, OutputStream out)
+                      throws IOException {
+        long count = 0L;
+        String page = null;
+        byte[] prefix = String.format("{\"%s\": [", type.string())
+                              .getBytes(StandardCharsets.UTF_8);
+        try (JsonParser parser = this.factory.createParser(is)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expect json object in response");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("page".equals(field)) {
+                    page = token == JsonToken.VALUE_NULL ?
+                           null : parser.getText();
+                } else if (type.string().equals(field) &&
+                           token == JsonToken.START_ARRAY) {
+                    count += this.copyElements(parser, prefix, batch,
+                                               written, out);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Page(count, page);
+    }
+
+    private long copyElements(JsonParser parser, byte[] prefix, int batch,
+                              Set<Object> written, OutputStream out)
+                              throws IOException {
+        LineBuffer buffer = new LineBuffer();
+        List<Object> ids = new ArrayList<>(batch);
+        long count = 0L;
+        try (JsonGenerator generator = this.factory.createGenerator(buffer)) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                count++;
+                if (ids.isEmpty()) {
+                    buffer.reset();
+                    buffer.write(prefix);
+                }
+                int mark = buffer.size();
+                if (!ids.isEmpty()) {
+                    buffer.write(',');
+                }
+                Object id = copyElement(parser, generator);
+                generator.flush();
+                if (written.contains(id)) {
+                    buffer.truncate(mark);
+                    continue;
+                }
+                ids.add(id);
+                if (ids.size() == batch) {
+                    writeLine(buffer, ids, written, out);
+                }
+            }
+        }
+        if (!ids.isEmpty()) {
+            writeLine(buffer, ids, written, out);
+        }
+        return count;
+    }
+
+    private static void writeLine(LineBuffer buffer, List<Object> ids,
+                                  Set<Object> written, OutputStream out)
+                                  throws IOException {
+        buffer.write(LINE_END);
+        buffer.writeTo(out);
+        written.addAll(ids);
+        ids.clear();
+    }
+
+    /**
+     * Copy the element at current token and return its id, the id of
+     * number is returned as Long and others as String
+     */
+    private static Object copyElement(JsonParser parser,
+                                      JsonGenerator generator)
+                                      throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expect json object of element");
+        }
+        Object id = null;
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            generator.writeFieldName(field);
+            JsonToken token = parser.nextToken();
+            if (ID.equals(field) && token.isScalarValue()) {
+                id = token == JsonToken.VALUE_NUMBER_INT ?
+                     parser.getLongValue() : parser.getText();
+            }
+            generator.copyCurrentStructure(parser);
+        }
+        generator.writeEndObject();
+        if (id == null) {
+            throw new IOException("Expect id of element");
+        }
+        return id;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(path)
+                                                     .openConnection();
+        if (this.sslSocketFactory != null) {
+            ((HttpsURLConnection) conn).setSSLSocketFactory(
+                                        this.sslSocketFactory);
+        }
+        conn.setConnectTimeout(this.timeout);
+        conn.setReadTimeout(this.timeout);
+        conn.setRequestProperty("Accept", "application/json");
+        if (this.authorization != null) {
+            conn.setRequestProperty("Authorization", this.authorization);
+        }
+        return conn;
+    }
+
+    private static SSLSocketFactory sslSocketFactory(String trustStoreFile,
+                                                     String password) {
+        try (InputStream is = new FileInputStream(trustStoreFile)) {
+            KeyStore trustStore = KeyStore.getInstance(
+                                  KeyStore.getDefaultType());
+            trustStore.load(is, password.toCharArray());
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(
+                    TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore);
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, factory.getTrustManagers(), null);
+            return context.getSocketFactory();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new ToolsException("Failed to load trust store file '%s'",
+                                     e, trustStoreFile);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * The buffer of a line which can drop the element copied just now
+     */
+    private static class LineBuffer extends ByteArrayOutputStream {
+
+        public LineBuffer() {
+            super(LBUF_SIZE);
+        }
+
+        public void truncate(int size) {
+            assert size <= this.count;
+            this.count = size;
+        }
+    }
+
+    public static class Page {
+
+        private final long count;
+        private final String page;
+
+        public Page(long count, String page) {
+            this.count = count;
+            this.page = page;
+        }
+
+        /**
+         * Returns the count of elements in response including the skipped
+         */
+        public long count() {
+            return this.count;
+        }
+
+        public String page() {
+            return this.page;
+        }
+    }
+}
@@ -20,6 +20,8 @@
 package com.baidu.hugegraph.base;
 
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -41,14 +43,20 @@ public class ToolClient {
 
     private HugeClient client;
     private ObjectMapper mapper;
+    private ConnectionInfo info;
+    private String trustStoreFile;
+    private String trustStorePassword;
+    private Endpoints endpoints;
 
     public ToolClient(ConnectionInfo info) {
         if (info.username == null) {
             info.username = "";
             info.password = "";
         }
+        List<String> urls = urls(info.url);
+        String url = urls.get(0);
         String trustStoreFile, trustStorePassword;
-        if (info.url.startsWith("https")) {
+        if (url.startsWith("https")) {
             if (info.trustStoreFile == null || info.trustStoreFile.isEmpty()) {
                 trustStoreFile = Paths.get(homePath(), DEFAULT_TRUST_STORE_FILE)
                                       .toString();
@@ -61,7 +69,7 @@ public class ToolClient {
                 trustStorePassword = info.trustStorePassword;
             }
         } else {
-            assert info.url.startsWith("http");
+            assert url.startsWith("http");
             E.checkArgument(info.trustStoreFile == null,
                             "Can't set --trust-store-file when use http");
             E.checkArgument(info.trustStorePassword == null,
@@ -69,13 +77,58 @@ public class ToolClient {
             trustStoreFile = info.trustStoreFile;
             trustStorePassword = info.trustStorePassword;
         }
-        this.client = HugeClient.builder(info.url, info.graph)
-                                .configUser(info.username, info.password)
-                                .configTimeout(info.timeout)
-                                .configSSL(trustStoreFile, trustStorePassword)
-                                .build();
-
+        this.info = info;
+        this.trustStoreFile = trustStoreFile;
+        this.trustStorePassword = trustStorePassword;
+        this.client = this.buildClient(url);
         this.mapper = new ObjectMapper();
+
+        // The first server serves the requests other than scans and writes
+        List<Endpoints.Endpoint> endpoints = new ArrayList<>(urls.size());
+        for (String endpoint : urls) {
+            HugeClient client = endpoint.equals(url) ? this.client : null;
+            endpoints.add(new Endpoints.Endpoint(endpoint, client,
+                                                 this::buildClient,
+                                                 this::buildScanner));
+        }
+        this.endpoints = new Endpoints(endpoints);
+    }
+
+    /*
+     * The url may be a list of the servers of the same graph separated by
+     * comma, which must use the same protocol
+     */
+    private static List<String> urls(String url) {
+        List<String> urls = new ArrayList<>();
+        for (String part : url.split(",")) {
+            part = part.trim();
+            if (part.isEmpty() || urls.contains(part)) {
+                continue;
+            }
+            E.checkArgument(urls.isEmpty() ||
+                            part.startsWith("https") ==
+                            urls.get(0).startsWith("https"),
+                            "The servers in url must use the same " +
+                            "protocol, but got '%s'", url);
+            urls.add(part);
+        }
+        E.checkArgument(!urls.isEmpty(), "The url can't be empty");
+        return urls;
+    }
+
+    private HugeClient buildClient(String url) {
+        return HugeClient.builder(url, this.info.graph)
+                         .configUser(this.info.username, this.info.password)
+                         .configTimeout(this.info.timeout)
+                         .configSSL(this.trustStoreFile,
+                                    this.trustStorePassword)
+                         .build();
+    }
+
+    private ShardScanner buildScanner(String url) {
+        return new ShardScanner(url, this.info.graph, this.info.username,
+                                this.info.password, this.info.timeout,
+                                this.trustStoreFile, this.trustStorePassword);
     }
 
     public TraverserManager traverser() {
@@ -106,6 +159,10 @@ public class ToolClient {
         return this.mapper;
     }
 
+    public Endpoints endpoints() {
+        return this.endpoints;
+    }
+
     public static String homePath() {
         String homePath = System.getProperty("tools.home.path");
         E.checkArgument(StringUtils.isNotEmpty(homePath),
@@ -119,7 +176,11 @@ public class ToolClient {
     }
 
     public void close() {
-        if (this.client != null) {
+        if (this.endpoints != null) {
+            for (Endpoints.Endpoint endpoint : this.endpoints.all()) {
+                endpoint.close();
+            }
+        } else if (this.client != null) {
             this.client.close();
         }
     }
@@ -58,7 +58,8 @@ public class ToolManager {
             } else {
                 JavaType t = mapper.getTypeFactory()
                                    .constructParametricType(List.class, clazz);
-                return (List<T>) mapper.readValue(element.toString(), t);
+                // Bind from the tree directly rather than parse it again
+                return (List<T>) mapper.readerFor(t).readValue(element);
             }
         } catch (IOException e) {
             throw new SerializeException(
@@ -228,7 +228,9 @@ public class HugeGraphCommand {
                 backup = convMigrate2Backup(migrate);
                 backupManager = manager(BackupManager.class);
                 backupManager.init(backup);
-                backupManager.backup(backup.types());
+                if (!migrate.streaming()) {
+                    backupManager.backup(backup.types());
+                }
 
                 // Restore source graph to target graph
                 this.url(migrate.targetUrl());
@@ -255,7 +257,17 @@ public class HugeGraphCommand {
                 restoreManager.init(restore);
                 restoreManager.mode(mode);
 
-                restoreManager.restore(restore.types());
+                if (migrate.streaming()) {
+                    // Backup source graph and restore it at the same time
+                    backupManager.stream(restoreManager.startStreaming(),
+                                         restoreManager::afterWritten,
+                                         migrate.tee());
+                    // Drain the writers before the manifests are closed
+                    backupManager.backup(backup.types(),
+                                         restoreManager::finishStreaming);
+                } else {
+                    restoreManager.restore(restore.types());
+                }
                 // Restore target graph mode
                 graphsManager.mode(migrate.targetGraph(), origin);
                 break;
@@ -450,6 +462,13 @@ public class HugeGraphCommand {
         backup.logDir(migrate.logDir());
         backup.types(migrate.types());
         backup.retry(migrate.retry());
+        backup.retryDelay(migrate.retryDelay());
+        backup.maxRetryDelay(migrate.maxRetryDelay());
+        backup.adaptiveConcurrency(migrate.adaptiveConcurrency());
+        backup.maxConcurrency(migrate.maxConcurrency());
+        backup.latencyTarget(migrate.latencyTarget());
+        backup.failFast(migrate.failFast());
+        backup.resume(migrate.resume());
         backup.hdfsConf(migrate.hdfsConf());
         return backup;
     }
@@ -463,6 +482,13 @@ public class HugeGraphCommand {
         restore.logDir(migrate.logDir());
         restore.types(migrate.types());
         restore.retry(migrate.retry());
+        restore.retryDelay(migrate.retryDelay());
+        restore.maxRetryDelay(migrate.maxRetryDelay());
+        restore.adaptiveConcurrency(migrate.adaptiveConcurrency());
+        restore.maxConcurrency(migrate.maxConcurrency());
+        restore.latencyTarget(migrate.latencyTarget());
+        restore.failFast(migrate.failFast());
+        restore.resume(migrate.resume());
         restore.hdfsConf(migrate.hdfsConf());
         return restore;
     }
@@ -32,6 +32,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.base.CompressCodec;
 import com.baidu.hugegraph.constant.AuthRestoreConflictStrategy;
 import com.baidu.hugegraph.manager.TasksManager;
 import com.baidu.hugegraph.structure.constant.GraphMode;
@@ -136,13 +137,28 @@ public class SubCommands {
 
         @Parameter(names = {"--format"}, arity = 1,
                    validateWith = {FormatValidator.class},
-                   description = "File format, valid is [json, text]")
+                   description = "File format, valid is [json, text, " +
+                                 "binary]")
         public String format = "json";
 
         @Parameter(names = {"--compress"}, arity = 1,
                    description = "compress flag")
         public boolean compress = true;
 
+        @Parameter(names = {"--compress-codec"}, arity = 1,
+                   converter = CompressCodecConverter.class,
+                   description = "The codec to compress backup files, " +
+                                 "valid is [none, zip, gzip, lz4, zstd], " +
+                                 "only valid when compress flag is true")
+        public CompressCodec compressCodec = CompressCodec.ZIP;
+
+        @Parameter(names = {"--compress-level"}, arity = 1,
+                   description = "The compress level of codec, -1 means " +
+                                 "the default level of codec, valid is " +
+                                 "[0, 9] for zip and gzip, [1, 17] for lz4 " +
+                                 "and [1, 22] for zstd")
+        public int compressLevel = CompressCodec.DEFAULT_LEVEL;
+
         @Parameter(names = {"--label"}, arity = 1,
                    description = "Vertex label or edge label, only valid when type " +
                                  "is vertex or edge")
@@ -157,6 +173,58 @@ public class SubCommands {
                                  "only valid when type is vertex or edge")
         public List<String> properties = ImmutableList.of();
 
+        @Parameter(names = {"--resplit-depth"}, arity = 1,
+                   validateWith = {ResplitDepthValidator.class},
+                   description = "Max times to bisect and retry a shard " +
+                                 "which is timeout or exceeds the records " +
+                                 "limit, 0 means not to re-split")
+        public int resplitDepth = 3;
+
+        @Parameter(names = {"--pipeline"}, arity = 1,
+                   description = "Whether to fetch the next page of a shard " +
+                                 "while the current page is being written, " +
+                                 "not used by passthrough which writes the " +
+                                 "page while reading it")
+        public boolean pipeline = false;
+
+        @Parameter(names = {"--pipeline-depth"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The max number of fetched pages waiting " +
+                                 "to be written for each shard, only valid " +
+                                 "when pipeline is enabled")
+        public int pipelineDepth = 2;
+
+        @Parameter(names = {"--resume"}, arity = 1,
+                   description = "Whether to resume the backup in the " +
+                                 "directory, the shards recorded in the " +
+                                 "manifest as completed will be skipped")
+        public boolean resume = false;
+
+        @Parameter(names = {"--base-directory"}, arity = 1,
+                   description = "The directory of a previous backup, only " +
+                                 "the vertex and edge shards changed since " +
+                                 "it will be written, the unchanged ones " +
+                                 "refer to the base backup. Only valid " +
+                                 "when format is json and label is not " +
+                                 "set. The removed ones are not recorded, " +
+                                 "so it's restored as a whole graph into " +
+                                 "a graph without vertices and edges")
+        public String baseDirectory;
+
+        @Parameter(names = {"--passthrough"}, arity = 1,
+                   description = "Whether to write the vertices and edges " +
+                                 "in the response of server to files " +
+                                 "without deserializing them, only valid " +
+                                 "when format is json and label is not set")
+        public boolean passthrough = false;
+
+        @Parameter(names = {"--concurrent-types"}, arity = 1,
+                   description = "Whether to back up the schema, vertices " +
+                                 "and edges concurrently in the same " +
+                                 "threads rather than one type after " +
+                                 "another")
+        public boolean concurrentTypes = false;
+
         public long splitSize() {
             return this.splitSize;
         }
@@ -189,6 +257,22 @@ public class SubCommands {
             this.compress = compress;
         }
 
+        public CompressCodec compressCodec() {
+            return this.compressCodec;
+        }
+
+        public void compressCodec(CompressCodec compressCodec) {
+            this.compressCodec = compressCodec;
+        }
+
+        public int compressLevel() {
+            return this.compressLevel;
+        }
+
+        public void compressLevel(int compressLevel) {
+            this.compressLevel = compressLevel;
+        }
+
         public String label() {
             return this.label;
         }
@@ -212,6 +296,62 @@ public class SubCommands {
         public void properties(List<String> properties) {
             this.properties = properties;
         }
+
+        public int resplitDepth() {
+            return this.resplitDepth;
+        }
+
+        public void resplitDepth(int resplitDepth) {
+            this.resplitDepth = resplitDepth;
+        }
+
+        public boolean pipeline() {
+            return this.pipeline;
+        }
+
+        public void pipeline(boolean pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        public int pipelineDepth() {
+            return this.pipelineDepth;
+        }
+
+        public void pipelineDepth(int pipelineDepth) {
+            this.pipelineDepth = pipelineDepth;
+        }
+
+        public boolean resume() {
+            return this.resume;
+        }
+
+        public void resume(boolean resume) {
+            this.resume = resume;
+        }
+
+        public String baseDirectory() {
+            return this.baseDirectory;
+        }
+
+        public void baseDirectory(String baseDirectory) {
+            this.baseDirectory = baseDirectory;
+        }
+
+        public boolean passthrough() {
+            return this.passthrough;
+        }
+
+        public void passthrough(boolean passthrough) {
+            this.passthrough = passthrough;
+        }
+
+        public boolean concurrentTypes() {
+            return this.concurrentTypes;
+        }
+
+        public void concurrentTypes(boolean concurrentTypes) {
+            this.concurrentTypes = concurrentTypes;
+        }
     }
 
     @Parameters(commandDescription = "Restore graph schema/data. If directory" +
@@ -227,6 +367,49 @@ public class SubCommands {
         @ParametersDelegate
         private HugeTypes types = new HugeTypes();
 
+        @Parameter(names = {"--reader-num"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The number of threads to read backup " +
+                                 "files, the vertices and edges read are " +
+                                 "written by all the threads of thread-num")
+        public int readerNum = 2;
+
+        @Parameter(names = {"--adaptive-batch"}, arity = 1,
+                   description = "Whether to adapt the batch size of " +
+                                 "vertices and edges to the latency of " +
+                                 "requests, the batch grows while the " +
+                                 "latency is under batch-latency")
+        public boolean adaptiveBatch = false;
+
+        @Parameter(names = {"--batch-latency"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The target latency in ms of a batch " +
+                                 "request, only valid when adaptive batch " +
+                                 "is enabled")
+        public int batchLatency = 1000;
+
+        @Parameter(names = {"--max-batch-size"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The max size of a batch, only valid when " +
+                                 "adaptive batch is enabled")
+        public int maxBatchSize = 5000;
+
+        @Parameter(names = {"--concurrent-types"}, arity = 1,
+                   description = "Whether to restore the vertices and " +
+                                 "edges concurrently by the same threads, " +
+                                 "the schema types are still restored " +
+                                 "one by one")
+        public boolean concurrentTypes = false;
+
+        @Parameter(names = {"--resume"}, arity = 1,
+                   description = "Whether to resume the restore from the " +
+                                 "directory, the schema types, shards and " +
+                                 "files recorded in the journal as " +
+                                 "restored will be skipped, the journal is " +
+                                 "only kept with it, so it's also needed " +
+                                 "by the first run to be resumed later")
+        public boolean resume = false;
+
         public boolean clean() {
             return this.clean;
         }
@@ -235,6 +418,54 @@ public class SubCommands {
             this.clean = clean;
         }
 
+        public int readerNum() {
+            return this.readerNum;
+        }
+
+        public void readerNum(int readerNum) {
+            this.readerNum = readerNum;
+        }
+
+        public boolean adaptiveBatch() {
+            return this.adaptiveBatch;
+        }
+
+        public void adaptiveBatch(boolean adaptiveBatch) {
+            this.adaptiveBatch = adaptiveBatch;
+        }
+
+        public int batchLatency() {
+            return this.batchLatency;
+        }
+
+        public void batchLatency(int batchLatency) {
+            this.batchLatency = batchLatency;
+        }
+
+        public int maxBatchSize() {
+            return this.maxBatchSize;
+        }
+
+        public void maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public boolean concurrentTypes() {
+            return this.concurrentTypes;
+        }
+
+        public void concurrentTypes(boolean concurrentTypes) {
+            this.concurrentTypes = concurrentTypes;
+        }
+
+        public boolean resume() {
+            return this.resume;
+        }
+
+        public void resume(boolean resume) {
+            this.resume = resume;
+        }
+
         public List<HugeType> types() {
             return this.types.types;
         }
@@ -247,6 +478,9 @@ public class SubCommands {
     @Parameters(commandDescription = "Dump graph to files")
     public static class DumpGraph extends BackupRestore {
 
+        public static final String HASH = "hash";
+        public static final String SORT_MERGE = "sort-merge";
+
         @Parameter(names = {"--formatter", "-f"}, arity = 1,
                    description = "Formatter to customize format of vertex/edge")
         public String formatter = "JsonFormatter";
@@ -255,10 +489,35 @@ public class SubCommands {
                    description = "Split size of shard")
         public long splitSize = 1024 * 1024L;
 
+        @Parameter(names = {"--memory-budget"}, arity = 1,
+                   description = "The max memory in MB to hold vertices " +
+                                 "and edges, the graph is partitioned by " +
+                                 "vertex id and spilled to the log " +
+                                 "directory if set, 0 means to hold the " +
+                                 "whole graph in memory")
+        public int memoryBudget = 0;
+
+        @Parameter(names = {"--join-strategy"}, arity = 1,
+                   validateWith = {JoinStrategyValidator.class},
+                   description = "The way to join the vertices with their " +
+                                 "edges spilled under memory budget, " +
+                                 "'hash' to join the partitions by hash of " +
+                                 "vertex id, 'sort-merge' to merge the " +
+                                 "compressed runs sorted by vertex id")
+        public String joinStrategy = HASH;
+
         public String formatter() {
             return this.formatter;
         }
 
+        public int memoryBudget() {
+            return this.memoryBudget;
+        }
+
+        public String joinStrategy() {
+            return this.joinStrategy;
+        }
+
         public long splitSize() {
             return this.splitSize;
         }
@@ -279,7 +538,10 @@ public class SubCommands {
         private HugeTypes types = new HugeTypes();
 
         @Parameter(names = {"--target-url"}, arity = 1,
-                   description = "The url of target graph to migrate")
+                   validateWith = {UrlValidator.class},
+                   description = "The url of target graph to migrate, the " +
+                                 "urls of several servers of the graph can " +
+                                 "be separated by ','")
         public String targetUrl = "http://127.0.0.1:8081";
 
         @Parameter(names = {"--target-graph"}, arity = 1,
@@ -320,6 +582,25 @@ public class SubCommands {
                                  "graph data after restored")
         public boolean keepData = false;
 
+        @Parameter(names = {"--streaming"}, arity = 1,
+                   description = "Whether to write the schema, vertices " +
+                                 "and edges fetched from source graph to " +
+                                 "target graph directly rather than by " +
+                                 "the local directory")
+        public boolean streaming = false;
+
+        @Parameter(names = {"--tee"}, arity = 1,
+                   description = "Whether to also write the backup to the " +
+                                 "local directory when streaming")
+        public boolean tee = false;
+
+        @Parameter(names = {"--resume"}, arity = 1,
+                   description = "Whether to resume the migrate from the " +
+                                 "local directory, the shards fetched from " +
+                                 "source graph and the ones written to " +
+                                 "target graph will be skipped")
+        public boolean resume = false;
+
         public long splitSize() {
             return this.splitSize;
         }
@@ -371,6 +652,18 @@ public class SubCommands {
         public boolean keepData() {
             return this.keepData;
         }
+
+        public boolean streaming() {
+            return this.streaming;
+        }
+
+        public boolean tee() {
+            return this.tee;
+        }
+
+        public boolean resume() {
+            return this.resume;
+        }
     }
 
     @Parameters(commandDescription = "Create graph with config")
@@ -648,6 +941,34 @@ public class SubCommands {
         @ParametersDelegate
         private Retry retry = new Retry();
 
+        @Parameter(names = {"--adaptive-concurrency"}, arity = 1,
+                   description = "Whether to adapt the number of in-flight " +
+                                 "requests to the latency, from thread-num " +
+                                 "up to max-concurrency, it grows while the " +
+                                 "p99 latency is under latency-target and " +
+                                 "is cut on timeouts")
+        public boolean adaptiveConcurrency = false;
+
+        @Parameter(names = {"--max-concurrency"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The max number of in-flight requests, " +
+                                 "the executors are sized to it, only valid " +
+                                 "when adaptive concurrency is enabled, " +
+                                 "default is 4 times of thread-num")
+        public int maxConcurrency = 0;
+
+        @Parameter(names = {"--latency-target"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The target p99 latency in ms of requests, " +
+                                 "only valid when adaptive concurrency is " +
+                                 "enabled")
+        public int latencyTarget = 3000;
+
+        @Parameter(names = {"--fail-fast"}, arity = 1,
+                   description = "Whether to cancel the outstanding tasks " +
+                                 "and exit once a task fails")
+        public boolean failFast = false;
+
         @DynamicParameter(names = "-D",
                           description = "HDFS config parameters")
         private Map<String, String> hdfsConf = new HashMap<>();
@@ -684,16 +1005,68 @@ public class SubCommands {
             this.retry.retry = retry;
         }
 
+        public int retryDelay() {
+            return this.retry.retryDelay;
+        }
+
+        public void retryDelay(int retryDelay) {
+            this.retry.retryDelay = retryDelay;
+        }
+
+        public int maxRetryDelay() {
+            return this.retry.maxRetryDelay;
+        }
+
+        public void maxRetryDelay(int maxRetryDelay) {
+            this.retry.maxRetryDelay = maxRetryDelay;
+        }
+
         public void hdfsConf(Map<String, String> hdfsConf) {
             this.hdfsConf = hdfsConf;
         }
+
+        public boolean adaptiveConcurrency() {
+            return this.adaptiveConcurrency;
+        }
+
+        public void adaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+        }
+
+        public int maxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        public void maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int latencyTarget() {
+            return this.latencyTarget;
+        }
+
+        public void latencyTarget(int latencyTarget) {
+            this.latencyTarget = latencyTarget;
+        }
+
+        public boolean failFast() {
+            return this.failFast;
+        }
+
+        public void failFast(boolean failFast) {
+            this.failFast = failFast;
+        }
     }
 
     public static class Url {
 
         @Parameter(names = {"--url"}, arity = 1,
                    validateWith = {UrlValidator.class},
-                   description = "The URL of HugeGraph-Server")
+                   description = "The URL of HugeGraph-Server, the URLs " +
+                                 "of several servers of the same graph can " +
+                                 "be separated by ',' to spread the shard " +
+                                 "requests of backup and the writes of " +
+                                 "restore")
         public String url = "http://127.0.0.1:8080";
     }
 
@@ -883,6 +1256,18 @@ public class SubCommands {
                    validateWith = {PositiveValidator.class},
                    description = "Retry times, default is 3")
         public int retry = 3;
+
+        @Parameter(names = {"--retry-delay"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The delay in ms before the first retry, " +
+                                 "it doubles for each retry and is " +
+                                 "randomized by half to spread retries")
+        public int retryDelay = 100;
+
+        @Parameter(names = {"--max-retry-delay"}, arity = 1,
+                   validateWith = {PositiveValidator.class},
+                   description = "The max delay in ms before a retry")
+        public int maxRetryDelay = 10000;
     }
 
     public static class Limit {
@@ -944,6 +1329,22 @@ public class SubCommands {
             this.retry.retry = retry;
         }
 
+        public int retryDelay() {
+            return this.retry.retryDelay;
+        }
+
+        public void retryDelay(int retryDelay) {
+            this.retry.retryDelay = retryDelay;
+        }
+
+        public int maxRetryDelay() {
+            return this.retry.maxRetryDelay;
+        }
+
+        public void maxRetryDelay(int maxRetryDelay) {
+            this.retry.maxRetryDelay = maxRetryDelay;
+        }
+
         public String directory() {
             return this.directory;
         }
@@ -1027,6 +1428,17 @@ public class SubCommands {
         }
     }
 
+    public static class CompressCodecConverter
+                  implements IStringConverter<CompressCodec> {
+
+        @Override
+        public CompressCodec convert(String value) {
+            E.checkArgument(value != null && !value.isEmpty(),
+                            "Compress codec can't be null or empty");
+            return CompressCodec.fromName(value);
+        }
+    }
+
     public static class HugeTypeListConverter
                   implements IStringConverter<List<HugeType>> {
 
@@ -1171,7 +1583,7 @@ public class SubCommands {
     public static class FormatValidator implements IParameterValidator {
 
         private static final Set<String> FORMATS = ImmutableSet.of(
-                "JSON", "TEXT"
+                "JSON", "TEXT", "BINARY"
         );
 
         @Override
@@ -1200,6 +1612,22 @@ public class SubCommands {
         }
     }
 
+    public static class JoinStrategyValidator implements IParameterValidator {
+
+        private static final Set<String> STRATEGIES = ImmutableSet.of(
+                DumpGraph.HASH, DumpGraph.SORT_MERGE
+        );
+
+        @Override
+        public void validate(String name, String value) {
+            if (!STRATEGIES.contains(value.toLowerCase())) {
+                throw new ParameterException(String.format(
+                          "Invalid --join-strategy '%s', valid value is %s",
+                          value, STRATEGIES));
+            }
+        }
+    }
+
     public static class TaskStatusValidator implements IParameterValidator {
 
         @Override
@@ -1225,9 +1653,12 @@ public class SubCommands {
                     + "([0-9a-z_!~*'()-]+\\.)*[0-9a-z_!~*'()-]+)"
                     // Port
                     + ":([0-9]|[1-9]\\d{1,3}|[1-5]\\d{4}|6[0-5]{2}[0-3][0-5])$";
-            if (!value.matches(regex)) {
-                throw new ParameterException(String.format(
-                          "Invalid url value of args '%s': '%s'", name, value));
+            for (String url : value.split(",")) {
+                if (!url.trim().matches(regex)) {
+                    throw new ParameterException(String.format(
+                              "Invalid url value of args '%s': '%s'",
+                              name, value));
+                }
             }
         }
     }
@@ -1244,6 +1675,22 @@ public class SubCommands {
         }
     }
 
+    public static class ResplitDepthValidator implements IParameterValidator {
+
+        // A shard is bisected into 2^depth shards at most
+        private static final int MAX_DEPTH = 16;
+
+        @Override
+        public void validate(String name, String value) {
+            int depth = Integer.parseInt(value);
+            if (depth < 0 || depth > MAX_DEPTH) {
+                throw new ParameterException(String.format(
+                          "Invalid %s '%s', valid value is in [0, %s]",
+                          name, value, MAX_DEPTH));
+            }
+        }
+    }
+
     public static class PositiveValidator implements IParameterValidator {
 
         @Override
@@ -19,6 +19,8 @@
 
 package com.baidu.hugegraph.formatter;
 
+import java.io.Writer;
+
 import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
 
 public interface Formatter {
@@ -26,6 +28,39 @@ public interface Formatter {
     // Serialize a vertex(with edge and property) to string
     public String dump(JsonVertex vertex) throws Exception;
 
+    // Write a vertex(with edge and property) to writer without line break
+    public default void dump(JsonVertex vertex, Writer writer)
+                             throws Exception {
+        writer.write(this.dump(vertex));
+    }
+
+    // Write vertices to writer, each one is followed by a line break
+    public default void dump(Iterable<JsonVertex> vertices, Writer writer)
+                             throws Exception {
+        try (VertexWriter vertexWriter = this.writer(writer)) {
+            for (JsonVertex vertex : vertices) {
+                vertexWriter.write(vertex);
+            }
+        }
+    }
+
+    // Open a writer of vertices to writer which is closed by the caller
+    public default VertexWriter writer(Writer writer) throws Exception {
+        return new VertexWriter() {
+
+            @Override
+            public void write(JsonVertex vertex) throws Exception {
+                Formatter.this.dump(vertex, writer);
+                writer.write('\n');
+            }
+
+            @Override
+            public void close() {
+                // Nothing to close
+            }
+        };
+    }
+
     public static final String PACKAGE = Formatter.class.getPackage().getName();
 
     public static Formatter loadFormatter(String formatter) {
@@ -43,4 +78,13 @@ public interface Formatter {
             throw new RuntimeException("Can't load formatter: " + formatter, e);
         }
     }
+
+    /**
+     * Write the vertices one by one to a file, each one is followed by a
+     * line break, the state of format is kept for the file until closed
+     */
+    public interface VertexWriter extends AutoCloseable {
+
+        public void write(JsonVertex vertex) throws Exception;
+    }
 }
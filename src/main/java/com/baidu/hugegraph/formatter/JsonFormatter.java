@@ -19,15 +19,49 @@
 
 package com.baidu.hugegraph.formatter;
 
+import java.io.Writer;
+
 import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 public class JsonFormatter implements Formatter {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    // The writer is flushed and closed by the caller
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false)
+            .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false);
 
     @Override
     public String dump(JsonVertex vertex) throws Exception {
         return this.mapper.writeValueAsString(vertex);
     }
+
+    @Override
+    public void dump(JsonVertex vertex, Writer writer) throws Exception {
+        this.mapper.writeValue(writer, vertex);
+    }
+
+    @Override
+    public VertexWriter writer(Writer writer) throws Exception {
+        JsonGenerator generator = this.mapper.getFactory()
+                                             .createGenerator(writer);
+        // Separate the vertices by line break instead of space
+        generator.setRootValueSeparator(null);
+        return new VertexWriter() {
+
+            @Override
+            public void write(JsonVertex vertex) throws Exception {
+                JsonFormatter.this.mapper.writeValue(generator, vertex);
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void close() throws Exception {
+                generator.close();
+            }
+        };
+    }
 }
@@ -20,11 +20,10 @@
 package com.baidu.hugegraph.formatter.kgdumper;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import com.baidu.hugegraph.formatter.Formatter;
 import com.baidu.hugegraph.structure.JsonGraph.JsonEdge;
@@ -34,12 +33,9 @@ public class DumpKGFormatter implements Formatter {
 
     private ComputeSign cs;
 
-    // entity dump format："plaint_id value key weight type parent parent_weight
-    // child child_weight region region_weight\t\t\t"
-    private static final String ENTITY_FORMAT =
-            "%s\t%s\t%s\t%s\t%d\t%s\t%s\t%s\t%s\t%s\t%s\t\t\t";
-    // mention dump format: "mention descript descript_weight"
-    private static final String MENTION_FORMAT = "%s\t%s\t%s";
+    // The fields of entity and mention are separated by tab, and the values
+    // of a field are separated by SEPARATOR
+    private static final String SEPARATOR = "|*|";
 
     public DumpKGFormatter() throws IOException {
         cs = new ComputeSign("./trade_value", "GBK");
@@ -47,30 +43,38 @@ public class DumpKGFormatter implements Formatter {
 
     @Override
     public String dump(JsonVertex vertex) throws Exception {
+        StringWriter writer = new StringWriter();
+        this.dump(vertex, writer);
+        return writer.toString();
+    }
+
+    @Override
+    public void dump(JsonVertex vertex, Writer writer) throws Exception {
         switch (vertex.getLabel()) {
             case "entity":
-                return this.dumpEntity(vertex);
+                this.dumpEntity(vertex, writer);
+                break;
             case "mention":
-                return this.dumpMemtion(vertex);
+                this.dumpMemtion(vertex, writer);
+                break;
             default:
-                return "";
+                break;
         }
     }
 
-    private String dumpEntity(JsonVertex vertex)
-                              throws UnsupportedEncodingException {
+    private void dumpEntity(JsonVertex vertex, Writer writer)
+                            throws IOException {
         if (vertex == null) {
-            return "";
+            return;
         }
-        Set<JsonEdge> edges = vertex.getEdges();
-        Map<String, Object> properties = vertex.properties();
+        List<JsonEdge> edges = vertex.getEdges();
 
-        String plainId = (String) properties.get("plain_id");
+        String plainId = (String) vertex.property("plain_id");
         String seqPlainId = cs.computeSeqNum(plainId);
-        String value = (String) properties.get("value");
-        String key = (String) properties.get("key");
-        double weight = (double) properties.get("weight");
-        int type = (int) properties.get("type");
+        String value = (String) vertex.property("value");
+        String key = (String) vertex.property("key");
+        double weight = (double) vertex.property("weight");
+        int type = (int) vertex.property("type");
 
         List<String> parent = new ArrayList<>();
         List<String> parentWeight = new ArrayList<>();
@@ -87,40 +91,45 @@ public class DumpKGFormatter implements Formatter {
                 continue;
             }
 
-            Map<String, Object> props = edge.properties();
             switch (edge.getLabel()) {
                 case "is":
                     parent.add(((String) edge.getTarget()).split(":", 2)[1]);
-                    parentWeight.add(props.get("weight").toString());
+                    parentWeight.add(edge.property("weight").toString());
                     break;
                 case "has":
                     child.add(((String) edge.getTarget()).split(":", 2)[1]);
-                    childWeight.add(props.get("weight").toString());
+                    childWeight.add(edge.property("weight").toString());
                     break;
                 case "region":
                     region.add(((String) edge.getTarget()).split(":", 2)[1]);
-                    regionWeight.add(props.get("weight").toString());
+                    regionWeight.add(edge.property("weight").toString());
                     break;
             }
         }
-        return String.format(ENTITY_FORMAT,
-                             seqPlainId, value, key, weight, type,
-                             String.join("|*|", parent),
-                             String.join("|*|", parentWeight),
-                             String.join("|*|", child),
-                             String.join("|*|", childWeight),
-                             String.join("|*|", region),
-                             String.join("|*|", regionWeight));
+        // entity dump format："plaint_id value key weight type parent
+        // parent_weight child child_weight region region_weight\t\t\t"
+        writeField(writer, seqPlainId);
+        writeField(writer, value);
+        writeField(writer, key);
+        writeField(writer, String.valueOf(weight));
+        writeField(writer, String.valueOf(type));
+        writeField(writer, parent);
+        writeField(writer, parentWeight);
+        writeField(writer, child);
+        writeField(writer, childWeight);
+        writeField(writer, region);
+        writeJoined(writer, regionWeight);
+        writer.write("\t\t\t");
     }
 
-    private String dumpMemtion(JsonVertex vertex)
-                               throws UnsupportedEncodingException {
+    private void dumpMemtion(JsonVertex vertex, Writer writer)
+                             throws IOException {
         if (vertex == null) {
-            return "";
+            return;
         }
 
-        Set<JsonEdge> edges = vertex.getEdges();
-        String value = (String) vertex.properties().get("value");
+        List<JsonEdge> edges = vertex.getEdges();
+        String value = (String) vertex.property("value");
 
         List<String> descript = new ArrayList<>();
         List<String> descriptWeight = new ArrayList<>();
@@ -135,11 +144,34 @@ public class DumpKGFormatter implements Formatter {
             String plainId = ((String) edge.getTarget()).split(":", 2)[1];
             String seqPlainId = cs.computeSeqNum(plainId);
             descript.add(seqPlainId);
-            descriptWeight.add(edge.properties().get("confidence").toString());
+            descriptWeight.add(edge.property("confidence").toString());
         }
 
-        return String.format(MENTION_FORMAT, value,
-                             String.join("|*|", descript),
-                             String.join("|*|", descriptWeight));
+        // mention dump format: "mention descript descript_weight"
+        writeField(writer, value);
+        writeField(writer, descript);
+        writeJoined(writer, descriptWeight);
+    }
+
+    private static void writeField(Writer writer, String field)
+                                   throws IOException {
+        writer.write(String.valueOf(field));
+        writer.write('\t');
+    }
+
+    private static void writeField(Writer writer, List<String> fields)
+                                   throws IOException {
+        writeJoined(writer, fields);
+        writer.write('\t');
+    }
+
+    private static void writeJoined(Writer writer, List<String> fields)
+                                    throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                writer.write(SEPARATOR);
+            }
+            writer.write(fields.get(i));
+        }
     }
 }
@@ -77,12 +77,14 @@ public class AuthBackupRestoreManager extends BackupRestoreBaseManager {
 
     public void init(SubCommands.AuthBackup authBackup) {
         this.retry(authBackup.retry());
+        this.retryDelay(authBackup.retryDelay(), authBackup.maxRetryDelay());
         this.directory(authBackup.directory(), authBackup.hdfsConf());
         this.ensureDirectoryExist(true);
     }
 
     public void init(SubCommands.AuthRestore authRestore) {
         this.retry(authRestore.retry());
+        this.retryDelay(authRestore.retryDelay(), authRestore.maxRetryDelay());
         this.directory(authRestore.directory(), authRestore.hdfsConf());
         this.ensureDirectoryExist(false);
         this.strategy = authRestore.strategy();
@@ -28,35 +28,70 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 
 import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.base.CompressCodec;
+import com.baidu.hugegraph.base.Directory;
+import com.baidu.hugegraph.base.Journal;
+import com.baidu.hugegraph.base.Manifest;
 import com.baidu.hugegraph.base.Printer;
+import com.baidu.hugegraph.base.ShardScanner;
 import com.baidu.hugegraph.base.ToolClient;
 import com.baidu.hugegraph.cmd.SubCommands;
-import com.baidu.hugegraph.driver.TraverserManager;
 import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.serializer.BinarySerializer;
+import com.baidu.hugegraph.serializer.SchemaDictionary;
+import com.baidu.hugegraph.structure.GraphElement;
 import com.baidu.hugegraph.structure.constant.HugeType;
-import com.baidu.hugegraph.structure.graph.Edge;
 import com.baidu.hugegraph.structure.graph.Edges;
 import com.baidu.hugegraph.structure.graph.Shard;
-import com.baidu.hugegraph.structure.graph.Vertex;
 import com.baidu.hugegraph.structure.graph.Vertices;
 import com.baidu.hugegraph.structure.schema.EdgeLabel;
 import com.baidu.hugegraph.structure.schema.IndexLabel;
 import com.baidu.hugegraph.structure.schema.PropertyKey;
 import com.baidu.hugegraph.structure.schema.VertexLabel;
 import com.baidu.hugegraph.util.E;
+import com.baidu.hugegraph.util.ShardSplitter;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 public class BackupManager extends BackupRestoreBaseManager {
 
@@ -65,6 +100,11 @@ public class BackupManager extends BackupRestoreBaseManager {
     private static final String TIMEOUT_SHARDS = "_timeout" + SHARDS_SUFFIX;
     private static final String LIMIT_EXCEED_SHARDS = "_limit_exceed" + SHARDS_SUFFIX;
     private static final String FAILED_SHARDS = "_failed" + SHARDS_SUFFIX;
+    // Not ended with SHARDS_SUFFIX to be kept for the next backup
+    private static final String SHARD_COSTS = "_shard_costs";
+    // The shard costs more than OUTLIER_RATIO times of median is pre-split
+    private static final long OUTLIER_RATIO = 4L;
+    private static final int MAX_PRESPLIT_DEPTH = 4;
 
     public static final int BACKUP_DEFAULT_TIMEOUT = 120;
 
@@ -72,6 +112,10 @@ public class BackupManager extends BackupRestoreBaseManager {
     private static final Set<String> BACKENDS_NO_PAGING =
                                      ImmutableSet.of("memory");
     private static final String PAGE_NONE = "";
+    private static final long SHARD_FAILED = -1L;
+    private static final List<HugeType> SHARDED_TYPES =
+                         ImmutableList.of(HugeType.VERTEX, HugeType.EDGE);
+    private static final HashFunction SHARD_HASH = Hashing.murmur3_128();
 
     private static final AtomicInteger nextId = new AtomicInteger(0);
     private static final ThreadLocal<Integer> suffix =
@@ -84,6 +128,36 @@ public class BackupManager extends BackupRestoreBaseManager {
     private String label;
     private boolean allProperties;
     private List<String> properties;
+    private int resplitDepth;
+    private boolean pipeline;
+    private int pipelineDepth;
+    private ExecutorService fetchers;
+    private boolean resume;
+    private boolean passthrough;
+    private boolean concurrentTypes;
+    private Map<HugeType, Consumer<List<?>>> sinks = ImmutableMap.of();
+    private boolean tee;
+    private Consumer<Runnable> afterWritten;
+    private final Map<HugeType, Manifest> manifests =
+                                          new EnumMap<>(HugeType.class);
+    private final Map<HugeType, List<Shard>> previousShards =
+                                             new EnumMap<>(HugeType.class);
+    private final Map<HugeType, List<Manifest.Entry>> completedShards =
+                  new EnumMap<>(HugeType.class);
+    private Directory baseDirectory;
+    private final Map<HugeType, Manifest> baseManifests =
+                                          new EnumMap<>(HugeType.class);
+    private final Map<HugeType, Map<String, Manifest.Entry>> baseEntries =
+                  new EnumMap<>(HugeType.class);
+    private final ThreadLocal<Hasher> hasher = new ThreadLocal<>();
+    private final AtomicLong resplitCounter = new AtomicLong(0);
+    private final AtomicLong skipCounter = new AtomicLong(0);
+    private final AtomicLong unchangedCounter = new AtomicLong(0);
+    private final AtomicLong presplitCounter = new AtomicLong(0);
+    private final Map<HugeType, Map<String, Long>> estimatedCosts =
+                  new EnumMap<>(HugeType.class);
+    private final Map<HugeType, Map<String, Long>> shardCosts =
+                  new EnumMap<>(HugeType.class);
 
     public BackupManager(ToolClient.ConnectionInfo info) {
         super(info, "backup");
@@ -92,10 +166,26 @@ public class BackupManager extends BackupRestoreBaseManager {
 
     public void init(SubCommands.Backup backup) {
         super.init(backup);
+        this.resume = backup.resume;
+        if (this.resume) {
+            this.readPreviousShards();
+        }
         this.removeShardsFilesIfExists();
         this.ensureDirectoryExist(true);
+        if (!this.resume) {
+            // The journal of restore doesn't match the new backup
+            Journal journal = new Journal(this.directory, Journal.RESTORE);
+            if (journal.exists()) {
+                this.directory.removeFile(Journal.RESTORE);
+            }
+        }
         this.splitSize(backup.splitSize());
-        this.compress = backup.compress;
+        this.compress = backup.compress &&
+                        backup.compressCodec != CompressCodec.NONE;
+        if (this.compress) {
+            backup.compressCodec.checkLevel(backup.compressLevel);
+        }
+        this.directory.codec(backup.compressCodec, backup.compressLevel);
         this.format = backup.format;
         if (backup.label != null) {
             E.checkArgument(backup.types().size() == 1 &&
@@ -105,8 +195,53 @@ public class BackupManager extends BackupRestoreBaseManager {
                             "backup type is vertex or edge");
         }
         this.label = backup.label;
+        if ("binary".equals(this.format)) {
+            this.initBinarySerializer();
+        }
         this.allProperties = backup.allProperties;
         this.properties = backup.properties;
+        if (backup.passthrough) {
+            E.checkArgument(this.hashable(),
+                            "The passthrough can only be set when " +
+                            "format is json and label is not set");
+        }
+        this.passthrough = backup.passthrough;
+        this.resplitDepth = backup.resplitDepth;
+        this.pipeline = backup.pipeline;
+        this.concurrentTypes = backup.concurrentTypes;
+        this.pipelineDepth = backup.pipelineDepth;
+        if (this.pipeline) {
+            // The fetches are gated by the limiter if enabled
+            this.fetchers = Executors.newFixedThreadPool(
+                            this.maxConcurrency());
+        }
+        if (backup.baseDirectory != null) {
+            E.checkArgument(this.hashable(),
+                            "The base directory can only be set when " +
+                            "format is json and label is not set");
+            this.baseDirectory = this.constructDirectory(
+                                 backup.baseDirectory);
+            E.checkArgument(!this.baseDirectory.absoluteDirectory().equals(
+                            this.directory.absoluteDirectory()),
+                            "The base directory can't be the directory " +
+                            "of backup: '%s'", backup.baseDirectory);
+            this.baseDirectory.ensureDirectoryExist(false);
+        }
+        this.initManifests(backup.types());
+    }
+
+    /**
+     * Hand the schema and elements fetched to the sinks instead of writing
+     * them to files, or in addition to writing if tee. A shard is recorded
+     * in the manifest by afterWritten once the sinks have written it.
+     */
+    public void stream(Map<HugeType, Consumer<List<?>>> sinks,
+                       Consumer<Runnable> afterWritten, boolean tee) {
+        E.checkArgument(!this.passthrough,
+                        "The passthrough can't be set when streaming");
+        this.sinks = sinks;
+        this.afterWritten = afterWritten;
+        this.tee = tee;
     }
 
     public void splitSize(long splitSize) {
@@ -120,17 +255,45 @@ public class BackupManager extends BackupRestoreBaseManager {
     }
 
     public void backup(List<HugeType> types) {
+        this.backup(types, completed -> { });
+    }
+
+    /**
+     * Back up the types, the finisher is called with whether the backup is
+     * completed after the threads of backup stopped and before the
+     * manifests are closed, so the shards it confirms can still be recorded
+     */
+    public void backup(List<HugeType> types, Consumer<Boolean> finisher) {
+        boolean completed = false;
         try {
             this.doBackup(types);
-        } catch (Throwable e) {
-            throw e;
+            completed = true;
         } finally {
             this.shutdown(this.type());
+            try {
+                finisher.accept(completed);
+            } finally {
+                for (Manifest manifest : this.manifests.values()) {
+                    manifest.close();
+                }
+            }
         }
     }
 
+    @Override
+    public void shutdown(String taskType) {
+        if (this.fetchers != null) {
+            this.fetchers.shutdownNow();
+        }
+        super.shutdown(taskType);
+    }
+
     public void doBackup(List<HugeType> types) {
         this.startTimer();
+        if (this.concurrentTypes) {
+            this.backupConcurrently(types);
+            types = ImmutableList.of();
+        }
         for (HugeType type : types) {
             switch (type) {
                 case VERTEX:
@@ -157,19 +320,111 @@ public class BackupManager extends BackupRestoreBaseManager {
             }
         }
         this.printSummary();
+        if (this.resplitCounter.get() > 0L) {
+            Printer.printKV("re-split shard number",
+                            this.resplitCounter.get());
+        }
+        if (this.skipCounter.get() > 0L) {
+            Printer.printKV("skipped shard number", this.skipCounter.get());
+        }
+        if (this.unchangedCounter.get() > 0L) {
+            Printer.printKV("unchanged shard number",
+                            this.unchangedCounter.get());
+        }
+        if (this.presplitCounter.get() > 0L) {
+            Printer.printKV("pre-split shard number",
+                            this.presplitCounter.get());
+        }
+    }
+
+    /*
+     * Back up all the types in the shared threads, the shards of vertices
+     * and edges are interleaved so that the threads are kept busy until
+     * the end of both
+     */
+    private void backupConcurrently(List<HugeType> types) {
+        List<HugeType> sharded = new ArrayList<>();
+        for (HugeType type : types) {
+            if (SHARDED_TYPES.contains(type)) {
+                sharded.add(type);
+                continue;
+            }
+            this.submit(() -> {
+                switch (type) {
+                    case PROPERTY_KEY:
+                        this.backupPropertyKeys();
+                        break;
+                    case VERTEX_LABEL:
+                        this.backupVertexLabels();
+                        break;
+                    case EDGE_LABEL:
+                        this.backupEdgeLabels();
+                        break;
+                    case INDEX_LABEL:
+                        this.backupIndexLabels();
+                        break;
+                    default:
+                        throw new AssertionError(String.format(
+                                  "Bad backup type: %s", type));
+                }
+            });
+        }
+
+        Printer.print("%s backup started", sharded);
+        Printer.printInBackward("Vertices and edges has been backup: ");
+        List<List<Shard>> shards = new ArrayList<>();
+        for (HugeType type : sharded) {
+            shards.add(this.shards(type, () -> type == HugeType.VERTEX ?
+                       this.client.traverser().vertexShards(splitSize()) :
+                       this.client.traverser().edgeShards(splitSize())));
+        }
+        int[] submitted = new int[sharded.size()];
+        while (true) {
+            // Submit the shard of the type which is least submitted in ratio
+            int next = -1;
+            for (int i = 0; i < sharded.size(); i++) {
+                int size = shards.get(i).size();
+                if (submitted[i] == size) {
+                    continue;
+                }
+                if (next < 0 || (double) submitted[i] / size <
+                                (double) submitted[next] /
+                                shards.get(next).size()) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            Shard shard = shards.get(next).get(submitted[next]++);
+            this.backupShardAsync(sharded.get(next), shard);
+        }
+        this.awaitTasks();
+        Printer.print("%d", this.vertexCounter.get() + this.edgeCounter.get());
+        for (HugeType type : sharded) {
+            this.saveShardCosts(type);
+            this.postProcessFailedShard(type);
+        }
+        if (sharded.contains(HugeType.VERTEX)) {
+            Printer.print("Vertices backup finished: %d",
+                          this.vertexCounter.get());
+        }
+        if (sharded.contains(HugeType.EDGE)) {
+            Printer.print("Edges backup finished: %d",
+                          this.edgeCounter.get());
+        }
     }
 
     protected void backupVertices() {
         Printer.print("Vertices backup started");
         Printer.printInBackward("Vertices has been backup: ");
-        List<Shard> shards = retry(() ->
-                             this.client.traverser().vertexShards(splitSize()),
-                             "querying shards of vertices");
-        this.writeShards(this.allShardsLog(HugeType.VERTEX), shards);
+        List<Shard> shards = this.shards(HugeType.VERTEX, () ->
+                             this.client.traverser().vertexShards(splitSize()));
         for (Shard shard : shards) {
-            this.backupVertexShardAsync(shard);
+            this.backupShardAsync(HugeType.VERTEX, shard);
         }
         this.awaitTasks();
+        this.saveShardCosts(HugeType.VERTEX);
         this.postProcessFailedShard(HugeType.VERTEX);
         Printer.print("%d", this.vertexCounter.get());
         Printer.print("Vertices backup finished: %d",
@@ -179,14 +434,13 @@ public class BackupManager extends BackupRestoreBaseManager {
     protected void backupEdges() {
         Printer.print("Edges backup started");
         Printer.printInBackward("Edges has been backup: ");
-        List<Shard> shards = retry(() ->
-                             this.client.traverser().edgeShards(splitSize()),
-                             "querying shards of edges");
-        this.writeShards(this.allShardsLog(HugeType.EDGE), shards);
+        List<Shard> shards = this.shards(HugeType.EDGE, () ->
+                             this.client.traverser().edgeShards(splitSize()));
         for (Shard shard : shards) {
-            this.backupEdgeShardAsync(shard);
+            this.backupShardAsync(HugeType.EDGE, shard);
         }
         this.awaitTasks();
+        this.saveShardCosts(HugeType.EDGE);
         this.postProcessFailedShard(HugeType.EDGE);
         Printer.print("%d", this.edgeCounter.get());
         Printer.print("Edges backup finished: %d", this.edgeCounter.get());
@@ -228,93 +482,561 @@ public class BackupManager extends BackupRestoreBaseManager {
                       this.indexLabelCounter.get());
     }
 
-    private void backupVertexShardAsync(Shard shard) {
-        this.submit(() -> {
+    /*
+     * Reuse the shards of previous backup when resuming, because the shards
+     * split by server may change and the completed ones couldn't be matched
+     */
+    private List<Shard> shards(HugeType type, Supplier<List<Shard>> supplier) {
+        List<Shard> shards = this.previousShards.get(type);
+        if (shards == null && this.baseManifests.containsKey(type)) {
+            // The shards must be same as base to compare the hash of them
+            shards = this.baseManifests.get(type).readShards();
+            E.checkState(shards != null,
+                         "The shards of %s are not recorded in the base " +
+                         "directory '%s'", type.string(),
+                         this.baseDirectory.directory());
+        }
+        this.loadShardCosts(type);
+        if (shards == null) {
+            shards = retry(supplier, "querying shards of " + type.string());
+            shards = this.splitOutliers(type, shards);
+        }
+        this.writeShards(this.allShardsLog(type), shards);
+        if (this.manifests.containsKey(type)) {
+            this.manifests.get(type).writeShards(shards);
+        }
+
+        List<Manifest.Entry> completed = this.completedShards.get(type);
+        if (completed == null || completed.isEmpty()) {
+            return this.largestFirst(type, shards);
+        }
+        Set<String> keys = new HashSet<>();
+        long count = 0L;
+        for (Manifest.Entry entry : completed) {
+            keys.add(Manifest.shardKey(entry.shard));
+            count += entry.count;
+        }
+        List<Shard> remaining = new ArrayList<>();
+        for (Shard shard : shards) {
+            if (!keys.contains(Manifest.shardKey(shard))) {
+                remaining.add(shard);
+            }
+        }
+        AtomicLong counter = type == HugeType.VERTEX ?
+                             this.vertexCounter : this.edgeCounter;
+        counter.getAndAdd(count);
+        this.skipCounter.getAndAdd(shards.size() - remaining.size());
+        Printer.print("Skip %s completed shards of %s",
+                      shards.size() - remaining.size(), type.string());
+        return this.largestFirst(type, remaining);
+    }
+
+    /*
+     * Split the shards which cost much more than the others in the previous
+     * backup, so that they don't make the tail of backup. The shards of a
+     * base backup or a resumed backup are not split since they must match
+     * the recorded ones.
+     */
+    private List<Shard> splitOutliers(HugeType type, List<Shard> shards) {
+        Map<String, Long> costs = this.estimatedCosts.get(type);
+        long median = median(shards, costs);
+        if (median <= 0L) {
+            return shards;
+        }
+        List<Shard> results = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            Long cost = costs.get(Manifest.shardKey(shard));
+            if (cost == null || cost <= OUTLIER_RATIO * median) {
+                results.add(shard);
+                continue;
+            }
+            int depth = Math.min(MAX_PRESPLIT_DEPTH,
+                                 63 - Long.numberOfLeadingZeros(
+                                      cost / median));
+            List<Shard> parts = ImmutableList.of(shard);
+            for (int i = 0; i < depth; i++) {
+                List<Shard> halves = new ArrayList<>();
+                for (Shard part : parts) {
+                    halves.addAll(ShardSplitter.bisect(this.backend, part));
+                }
+                parts = halves;
+            }
+            if (parts.size() > 1) {
+                this.presplitCounter.getAndIncrement();
+                for (Shard part : parts) {
+                    costs.put(Manifest.shardKey(part), cost / parts.size());
+                }
+            }
+            results.addAll(parts);
+        }
+        return results;
+    }
+
+    /*
+     * Sort the shards by the estimated cost in descending order, so the
+     * idle threads take the small shards at the end rather than waiting
+     * for a large one started late. The cost is the time spent on the shard
+     * by the previous backup, the shard not recorded is taken as median, or
+     * the length estimated by server if none is recorded.
+     */
+    private List<Shard> largestFirst(HugeType type, List<Shard> shards) {
+        Map<String, Long> costs = this.estimatedCosts.get(type);
+        long median = median(shards, costs);
+        List<Shard> sorted = new ArrayList<>(shards);
+        sorted.sort(Comparator.comparingLong((Shard shard) -> {
+            if (median <= 0L) {
+                return shard.length();
+            }
+            return costs.getOrDefault(Manifest.shardKey(shard), median);
+        }).reversed());
+        return sorted;
+    }
+
+    private static long median(List<Shard> shards, Map<String, Long> costs) {
+        List<Long> known = new ArrayList<>();
+        for (Shard shard : shards) {
+            Long cost = costs.get(Manifest.shardKey(shard));
+            if (cost != null) {
+                known.add(cost);
+            }
+        }
+        if (known.isEmpty()) {
+            return 0L;
+        }
+        Collections.sort(known);
+        return known.get(known.size() / 2);
+    }
+
+    private void recordShardCost(HugeType type, Shard shard, long cost) {
+        Map<String, Long> costs = this.shardCosts.get(type);
+        if (costs != null) {
+            costs.put(Manifest.shardKey(shard), cost);
+        }
+    }
+
+    private String shardCostsLog(HugeType type) {
+        return Paths.get(this.logDir(), type.string() + SHARD_COSTS)
+                    .toString();
+    }
+
+    private void loadShardCosts(HugeType type) {
+        Map<String, Long> costs = new ConcurrentHashMap<>();
+        File file = new File(this.shardCostsLog(type));
+        if (file.isFile()) {
             try {
-                backupVertexShard(shard);
-            } catch (Throwable e) {
-                this.logExceptionWithShard(e, HugeType.VERTEX, shard);
+                costs.putAll(this.client.mapper().readValue(
+                             file, new TypeReference<Map<String, Long>>() {}));
+            } catch (IOException e) {
+                // The costs only affect the order of shards
+                Printer.print("Ignore invalid shard costs file '%s': %s",
+                              file, e.getMessage());
             }
-        });
+        }
+        this.estimatedCosts.put(type, costs);
+        this.shardCosts.put(type, new ConcurrentHashMap<>());
     }
 
-    private void backupEdgeShardAsync(Shard shard) {
+    /*
+     * The costs of shards skipped when resuming are kept from previous
+     * backup, others are replaced by the costs of this backup
+     */
+    private void saveShardCosts(HugeType type) {
+        Map<String, Long> costs = new HashMap<>();
+        if (this.resume && this.estimatedCosts.containsKey(type)) {
+            costs.putAll(this.estimatedCosts.get(type));
+        }
+        costs.putAll(this.shardCosts.getOrDefault(type,
+                                                  Collections.emptyMap()));
+        if (costs.isEmpty()) {
+            return;
+        }
+        File file = new File(this.shardCostsLog(type));
+        try {
+            this.client.mapper().writeValue(file, costs);
+        } catch (IOException e) {
+            Printer.print("Failed to write shard costs file '%s': %s",
+                          file, e.getMessage());
+        }
+    }
+
+    private void backupShardAsync(HugeType type, Shard shard) {
         this.submit(() -> {
             try {
-                backupEdgeShard(shard);
+                long begin = System.currentTimeMillis();
+                this.backupShard(type, shard);
+                this.recordShardCost(type, shard,
+                                     System.currentTimeMillis() - begin);
             } catch (Throwable e) {
-                this.logExceptionWithShard(e, HugeType.EDGE, shard);
+                this.logExceptionWithShard(e, type, shard);
             }
         });
     }
 
-    private void backupVertexShard(Shard shard) {
-        String desc = String.format("backing up vertices[shard:%s]", shard);
-        Vertices vertices = null;
-        String page = this.initPage();
-        TraverserManager g = client.traverser();
-        do {
-            String p = page;
-            try {
-                if (page == null) {
-                    vertices = retry(() -> g.vertices(shard), desc);
-                } else {
-                    vertices = retry(() -> g.vertices(shard, p), desc);
-                }
-            } catch (ToolsException e) {
-                this.exceptionHandler(e, HugeType.VERTEX, shard);
-            }
-            if (vertices == null) {
+    /*
+     * All pages of a shard including its re-split halves are written to the
+     * file of current thread, so the shard occupies a continuous range, and
+     * the ids written for the shard are kept to skip them in the halves
+     */
+    private void backupShard(HugeType type, Shard shard) {
+        Manifest manifest = this.manifests.get(type);
+        Manifest.Entry base = this.baseEntry(type, shard);
+        List<ShardPage> pages = null;
+        String fetchedHash = null;
+        if (base != null) {
+            Hasher fetchedHasher = SHARD_HASH.newHasher();
+            pages = this.fetchShard(type, shard, fetchedHasher);
+            fetchedHash = fetchedHasher.hash().toString();
+            if (pages != null && fetchedHash.equals(base.hash)) {
+                manifest.append(base.inherit(this.baseDirectory
+                                                 .absoluteDirectory()));
+                AtomicLong counter = type == HugeType.VERTEX ?
+                                     this.vertexCounter : this.edgeCounter;
+                counter.getAndAdd(base.count);
+                this.unchangedCounter.getAndIncrement();
                 return;
             }
-            List<Vertex> vertexList = vertices.results();
-            if (vertexList == null || vertexList.isEmpty()) {
-                return;
+        }
+
+        String file = this.dataFile(type);
+        long begin = this.offset(file);
+        Hasher shardHasher = null;
+        if (manifest != null && this.hashable() && pages == null) {
+            shardHasher = SHARD_HASH.newHasher();
+            this.hasher.set(shardHasher);
+        }
+        Set<Object> written = ConcurrentHashMap.newKeySet();
+        long count;
+        try {
+            if (pages == null) {
+                count = this.backupShard(type, shard, 0, written);
+            } else {
+                // Write the pages fetched to compare, which are hashed
+                count = 0L;
+                for (ShardPage page : pages) {
+                    count += this.backupPage(type, page, written);
+                }
             }
-            long count = this.backup(HugeType.VERTEX, suffix.get(), vertexList);
+        } finally {
+            this.hasher.remove();
+        }
+        if (count == SHARD_FAILED || manifest == null) {
+            return;
+        }
+        long end = this.flush(file);
+        String fileName = file + this.directory.suffix(this.compress);
+        String hash = shardHasher == null ? fetchedHash :
+                      shardHasher.hash().toString();
+        Manifest.Entry entry = new Manifest.Entry(shard, fileName, begin, end,
+                                                  count, hash);
+        if (this.afterWritten == null) {
+            manifest.append(entry);
+        } else {
+            // Resume from the shards written to target rather than fetched
+            this.afterWritten.accept(() -> manifest.append(entry));
+        }
+    }
 
-            this.vertexCounter.getAndAdd(count);
-            Printer.printInBackward(this.vertexCounter.get());
-        } while ((page = vertices.page()) != null);
+    private Manifest.Entry baseEntry(HugeType type, Shard shard) {
+        Map<String, Manifest.Entry> entries = this.baseEntries.get(type);
+        if (entries == null) {
+            return null;
+        }
+        Manifest.Entry entry = entries.get(Manifest.shardKey(shard));
+        return entry == null || entry.hash == null ? null : entry;
     }
 
-    private void backupEdgeShard(Shard shard) {
-        String desc = String.format("backing up edges[shard %s]", shard);
-        Edges edges = null;
+    /*
+     * Fetch the pages of shard into memory to compare its hash with the base
+     * backup, the pages are written if it's changed, or returns null if the
+     * shard failed to be fetched, which is left to the backup of shard.
+     * A shard is about the split size, so holding its pages is affordable.
+     */
+    private List<ShardPage> fetchShard(HugeType type, Shard shard,
+                                       Hasher shardHasher) {
+        Set<Object> fetched = new HashSet<>();
+        ByteArrayOutputStream buffer = this.passthrough ?
+                                       new ByteArrayOutputStream() : null;
+        Function<String, ShardPage> fetcher = this.pageFetcher(type, shard,
+                                                               fetched,
+                                                               buffer);
+        List<ShardPage> pages = new ArrayList<>();
         String page = this.initPage();
-        TraverserManager g = client.traverser();
-        do {
-            try {
-                String p = page;
+        ShardPage result;
+        try {
+            do {
+                result = fetcher.apply(page);
+                if (!result.hasMore() || result.results == null) {
+                    // The elements of passthrough are copied into buffer
+                    continue;
+                }
+                pages.add(result);
+                List<?> list = result.results;
+                for (int start = 0; start < list.size(); start += BATCH) {
+                    int end = Math.min(start + BATCH, list.size());
+                    shardHasher.putBytes(super.serialize(
+                                         type, list.subList(start, end)));
+                }
+            } while (result.hasMore() && (page = result.page) != null);
+        } catch (ToolsException | IOException e) {
+            // Let the backup of shard handle the exception
+            return null;
+        }
+        if (buffer != null && buffer.size() > 0) {
+            byte[] bytes = buffer.toByteArray();
+            shardHasher.putBytes(bytes);
+            pages.add(new ShardPage(bytes, fetched.size()));
+        }
+        return pages;
+    }
+
+    /*
+     * The hash of a shard is computed over the bytes written for it, so it
+     * depends on the format and the filter of elements
+     */
+    private boolean hashable() {
+        return "json".equals(this.format) && this.label == null;
+    }
+
+    @Override
+    protected byte[] serialize(HugeType type, List<?> list)
+                               throws IOException {
+        byte[] bytes = super.serialize(type, list);
+        Hasher shardHasher = this.hasher.get();
+        if (shardHasher != null) {
+            shardHasher.putBytes(bytes);
+        }
+        return bytes;
+    }
+
+    /*
+     * The output is only used by passthrough, which writes the elements
+     * when fetching
+     */
+    private Function<String, ShardPage> pageFetcher(HugeType type,
+                                                    Shard shard,
+                                                    Set<Object> written,
+                                                    OutputStream out) {
+        if (this.passthrough) {
+            return this.passthroughFetcher(type, shard, written, out);
+        }
+        if (type == HugeType.VERTEX) {
+            String desc = String.format("backing up vertices[shard:%s]",
+                                        shard);
+            return page -> {
+                Vertices vertices;
+                if (page == null) {
+                    vertices = retry(e -> e.traverser().vertices(shard),
+                                     desc);
+                } else {
+                    vertices = retry(e -> e.traverser().vertices(shard,
+                                                                 page),
+                                     desc);
+                }
+                return new ShardPage(vertices.results(), vertices.page());
+            };
+        } else {
+            assert type == HugeType.EDGE;
+            String desc = String.format("backing up edges[shard %s]", shard);
+            return page -> {
+                Edges edges;
                 if (page == null) {
-                    edges = retry(() -> g.edges(shard), desc);
+                    edges = retry(e -> e.traverser().edges(shard), desc);
                 } else {
-                    edges = retry(() -> g.edges(shard, p), desc);
+                    edges = retry(e -> e.traverser().edges(shard, page),
+                                  desc);
                 }
+                return new ShardPage(edges.results(), edges.page());
+            };
+        }
+    }
+
+    /*
+     * Fetch pages by the REST API directly, the elements are copied from
+     * the response into lines of backup format and written to the output
+     * as they are read, the ids of the lines written are added to written
+     */
+    private Function<String, ShardPage> passthroughFetcher(
+                                        HugeType type, Shard shard,
+                                        Set<Object> written,
+                                        OutputStream out) {
+        String desc = type == HugeType.VERTEX ?
+                      String.format("backing up vertices[shard:%s]", shard) :
+                      String.format("backing up edges[shard %s]", shard);
+        return page -> {
+            int before = written.size();
+            ShardScanner.Page result = retry(
+                    e -> e.scanner().scan(type, shard, page, BATCH, written,
+                                          out),
+                    desc);
+            return new ShardPage(result.count(), written.size() - before,
+                                 result.page());
+        };
+    }
+
+    /*
+     * The lines of passthrough are written to the file of current thread,
+     * and hashed for the manifest if needed
+     */
+    private OutputStream passthroughOutput(HugeType type) {
+        OutputStream os = this.outputStream(this.dataFile(type),
+                                            this.compress);
+        Hasher shardHasher = this.hasher.get();
+        if (shardHasher == null) {
+            return os;
+        }
+        return new TeeOutputStream(os, Funnels.asOutputStream(shardHasher));
+    }
+
+    private long backupShard(HugeType type, Shard shard, int depth,
+                             Set<Object> written) {
+        OutputStream out = this.passthrough ?
+                           this.passthroughOutput(type) : null;
+        Function<String, ShardPage> fetcher = this.pageFetcher(type, shard,
+                                                               written, out);
+        // The passthrough streams the response into file without pipeline
+        if (this.pipeline && !this.passthrough) {
+            return this.backupShardPipelined(type, shard, depth, fetcher,
+                                             written);
+        }
+        String page = this.initPage();
+        long count = 0L;
+        ShardPage result;
+        do {
+            try {
+                result = fetcher.apply(page);
             } catch (ToolsException e) {
-                this.exceptionHandler(e, HugeType.EDGE, shard);
+                return this.exceptionHandler(e, type, shard, depth, count,
+                                             written);
             }
-            if (edges == null) {
-                return;
+            if (!result.hasMore()) {
+                break;
             }
-            List<Edge> edgeList = edges.results();
-            if (edgeList == null || edgeList.isEmpty()) {
-                return;
+            count += this.backupPage(type, result, written);
+        } while ((page = result.page) != null);
+        return count;
+    }
+
+    /*
+     * Fetch pages of the shard in a fetcher thread and write them in the
+     * current thread, so that the request of next page is in flight while
+     * the current page is being serialized and written
+     */
+    private long backupShardPipelined(HugeType type, Shard shard, int depth,
+                                      Function<String, ShardPage> fetcher,
+                                      Set<Object> written) {
+        BlockingQueue<ShardPage> queue =
+                new ArrayBlockingQueue<>(this.pipelineDepth);
+        Future<?> future = this.fetchers.submit(() -> {
+            String page = this.initPage();
+            try {
+                ShardPage result;
+                do {
+                    try {
+                        result = fetcher.apply(page);
+                    } catch (Throwable e) {
+                        result = new ShardPage(e);
+                    }
+                    queue.put(result);
+                } while (result.hasMore() && (page = result.page) != null);
+                queue.put(ShardPage.END);
+            } catch (InterruptedException ignored) {
+                // The writer has given up this shard
+                Thread.currentThread().interrupt();
+            }
+        });
+        long count = 0L;
+        try {
+            ShardPage result;
+            while ((result = queue.take()) != ShardPage.END) {
+                if (result.error instanceof ToolsException) {
+                    return this.exceptionHandler((ToolsException) result.error,
+                                                 type, shard, depth, count,
+                                                 written);
+                } else if (result.error != null) {
+                    throw new ToolsException("Failed to fetch %s of shard %s",
+                                             result.error, type, shard);
+                }
+                if (!result.hasMore()) {
+                    break;
+                }
+                count += this.backupPage(type, result, written);
             }
-            long count = this.backup(HugeType.EDGE, suffix.get(), edgeList);
+            return count;
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while backing up %s " +
+                                     "of shard %s", e, type, shard);
+        } finally {
+            future.cancel(true);
+        }
+    }
 
-            this.edgeCounter.getAndAdd(count);
-            Printer.printInBackward(this.edgeCounter.get());
-        } while ((page = edges.page()) != null);
+    private long backupPage(HugeType type, ShardPage result,
+                            Set<Object> written) {
+        String file = this.dataFile(type);
+        long count;
+        if (result.results == null) {
+            // The elements are written by scanner or fetched in advance
+            if (result.bytes != null) {
+                this.write(file, result.bytes, this.compress);
+                Hasher shardHasher = this.hasher.get();
+                if (shardHasher != null) {
+                    shardHasher.putBytes(result.bytes);
+                }
+            }
+            count = result.written;
+        } else {
+            List<?> results = unwritten(result.results, written);
+            Consumer<List<?>> sink = this.sinks.get(type);
+            if (sink == null || this.tee) {
+                count = this.backup(type, file, results);
+            } else {
+                count = results.size();
+            }
+            if (sink != null && !results.isEmpty()) {
+                sink.accept(results);
+            }
+        }
+        AtomicLong counter = type == HugeType.VERTEX ?
+                             this.vertexCounter : this.edgeCounter;
+        counter.getAndAdd(count);
+        // The progress of streaming is printed by the sinks
+        if (this.sinks.isEmpty()) {
+            if (this.concurrentTypes) {
+                Printer.printInBackward(this.vertexCounter.get() +
+                                        this.edgeCounter.get());
+            } else {
+                Printer.printInBackward(counter.get());
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Returns the elements not written for the shard yet and records their
+     * ids, the elements written before re-splitting are skipped by halves
+     */
+    private static List<?> unwritten(List<?> elements, Set<Object> written) {
+        List<Object> results = new ArrayList<>(elements.size());
+        for (Object e : elements) {
+            if (written.add(((GraphElement) e).id())) {
+                results.add(e);
+            }
+        }
+        return results.size() == elements.size() ? elements : results;
     }
 
     private void backup(HugeType type, List<?> list) {
-        String file = type.string();
-        this.write(file, type, list, this.compress);
+        Consumer<List<?>> sink = this.sinks.get(type);
+        if (sink == null || this.tee) {
+            String file = type.string();
+            this.write(file, type, list, this.compress);
+        }
+        if (sink != null) {
+            sink.accept(list);
+        }
     }
 
-    private long backup(HugeType type, int number, List<?> list) {
-        String file = type.string() + number;
+    private long backup(HugeType type, String file, List<?> list) {
         int size = list.size();
         long count = 0L;
         for (int start = 0; start < size; start += BATCH) {
@@ -326,12 +1048,29 @@ public class BackupManager extends BackupRestoreBaseManager {
         return count;
     }
 
+    /*
+     * Each thread writes elements to its own file
+     */
+    private String dataFile(HugeType type) {
+        String file = type.string() + suffix.get();
+        if ("binary".equals(this.format)) {
+            file += BinarySerializer.SUFFIX;
+        }
+        return file;
+    }
+
     private String initPage() {
         return BACKENDS_NO_PAGING.contains(this.backend) ? null : PAGE_NONE;
     }
 
-    private void exceptionHandler(ToolsException e, HugeType type,
-                                  Shard shard) {
+    /*
+     * Returns the count of elements written for the shard if it is completed
+     * by re-splitting, otherwise SHARD_FAILED, the count of halves doesn't
+     * include the elements written before the failure
+     */
+    private long exceptionHandler(ToolsException e, HugeType type,
+                                  Shard shard, int depth, long count,
+                                  Set<Object> written) {
         String message = e.getMessage();
         switch (type) {
             case VERTEX:
@@ -347,13 +1086,49 @@ public class BackupManager extends BackupRestoreBaseManager {
                           "Only VERTEX or EDGE exception is expected, " +
                           "but got '%s' exception", type));
         }
+        long halves = SHARD_FAILED;
         if (isLimitExceedException(e)) {
-            this.logLimitExceedShard(type, shard);
+            halves = this.resplitShard(type, shard, depth, written);
+            if (halves == SHARD_FAILED) {
+                this.logLimitExceedShard(type, shard);
+            }
         } else if (isTimeoutException(e)) {
-            this.logTimeoutShard(type, shard);
+            halves = this.resplitShard(type, shard, depth, written);
+            if (halves == SHARD_FAILED) {
+                this.logTimeoutShard(type, shard);
+            }
         } else {
             this.logExceptionWithShard(e, type, shard);
         }
+        return halves == SHARD_FAILED ? SHARD_FAILED : count + halves;
+    }
+
+    /*
+     * Bisect the shard and backup the halves in current thread, the elements
+     * of pages written before the failure are skipped by their ids
+     */
+    private long resplitShard(HugeType type, Shard shard, int depth,
+                              Set<Object> written) {
+        if (depth >= this.resplitDepth) {
+            return SHARD_FAILED;
+        }
+        List<Shard> shards = ShardSplitter.bisect(this.backend, shard);
+        if (shards.size() < 2) {
+            return SHARD_FAILED;
+        }
+        this.resplitCounter.getAndIncrement();
+        long count = 0L;
+        boolean failed = false;
+        for (Shard subShard : shards) {
+            long subCount = this.backupShard(type, subShard, depth + 1,
+                                             written);
+            if (subCount == SHARD_FAILED) {
+                failed = true;
+            } else {
+                count += subCount;
+            }
+        }
+        return failed ? SHARD_FAILED : count;
     }
 
     private void logTimeoutShard(HugeType type, Shard shard) {
@@ -367,6 +1142,11 @@ public class BackupManager extends BackupRestoreBaseManager {
     }
 
     private void logExceptionWithShard(Object e, HugeType type, Shard shard) {
+        if (e instanceof Throwable) {
+            this.taskFailed(String.format("backing up %s[shard:%s]",
+                                          type.string(), shard),
+                            (Throwable) e);
+        }
         String fileName = type.string() + FAILED_SHARDS;
         String filePath = Paths.get(this.logDir(), fileName).toString();
         try (FileWriter writer = new FileWriter(filePath, true)) {
@@ -392,7 +1172,8 @@ public class BackupManager extends BackupRestoreBaseManager {
         Printer.print("Timeout occurs when backup %s shards in file '%s', " +
                       "try to use global option --timeout to increase " +
                       "connection timeout(default is 120s for backup) or use " +
-                      "option --split-size to decrease split size",
+                      "option --split-size to decrease split size or use " +
+                      "option --resplit-depth to split them more times",
                       type, shardFile);
     }
 
@@ -427,17 +1208,18 @@ public class BackupManager extends BackupRestoreBaseManager {
     }
 
     private void writeShard(String file, Shard shard) {
-        this.writeShards(file, ImmutableList.of(shard));
+        this.writeLog(file, "shards", ImmutableList.of(shard), true);
     }
 
     private void writeShards(String file, List<Shard> shards) {
-        this.writeLog(file, "shards", shards);
+        this.writeLog(file, "shards", shards, false);
     }
 
-    private void writeLog(String file, String type, List<?> list) {
+    private void writeLog(String file, String type, List<?> list,
+                          boolean append) {
         Lock lock = locks.lock(file);
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream(LBUF_SIZE);
-             FileOutputStream fos = new FileOutputStream(file, false)) {
+             FileOutputStream fos = new FileOutputStream(file, append)) {
             String key = String.format("{\"%s\": ", type);
             baos.write(key.getBytes(API.CHARSET));
             this.client.mapper().writeValue(baos, list);
@@ -455,6 +1237,217 @@ public class BackupManager extends BackupRestoreBaseManager {
         return Paths.get(this.logDir(), shardsFile).toString();
     }
 
+    /*
+     * The dictionary is taken before backing up elements, the labels and
+     * property keys created later are written with their names. A resumed
+     * backup keeps the dictionary of previous runs, which the shards
+     * written by them are encoded with.
+     */
+    private void initBinarySerializer() {
+        SchemaDictionary dictionary;
+        if (this.resume &&
+            this.directory.files().contains(SchemaDictionary.FILE)) {
+            dictionary = SchemaDictionary.load(this.directory,
+                                               this.client.mapper());
+        } else {
+            dictionary = new SchemaDictionary(
+                         this.client.schema().getVertexLabels(),
+                         this.client.schema().getEdgeLabels(),
+                         this.client.schema().getPropertyKeys());
+            dictionary.save(this.directory, this.client.mapper());
+        }
+        this.binarySerializer = new BinarySerializer(dictionary,
+                                                     this.client.mapper());
+    }
+
+    private void readPreviousShards() {
+        for (HugeType type : SHARDED_TYPES) {
+            File file = new File(this.allShardsLog(type));
+            if (file.exists()) {
+                this.previousShards.put(type, this.readShards(file));
+            }
+        }
+    }
+
+    private void initManifests(List<HugeType> types) {
+        if (this.resume) {
+            this.bumpNextId();
+        }
+        for (HugeType type : types) {
+            if (!SHARDED_TYPES.contains(type)) {
+                continue;
+            }
+            Manifest manifest = new Manifest(this.directory,
+                                             this.client.mapper(), type);
+            if (this.baseDirectory != null) {
+                this.initBaseManifest(type);
+            }
+            if (this.resume) {
+                List<Manifest.Entry> entries = this.compact(type, manifest);
+                manifest.rewrite(entries);
+                this.completedShards.put(type, entries);
+            } else {
+                manifest.open(false);
+            }
+            this.manifests.put(type, manifest);
+        }
+    }
+
+    private void initBaseManifest(HugeType type) {
+        Manifest base = new Manifest(this.baseDirectory,
+                                     this.client.mapper(), type);
+        E.checkArgument(base.exists(),
+                        "The manifest of %s is not found in the base " +
+                        "directory '%s'", type.string(),
+                        this.baseDirectory.directory());
+        Map<String, Manifest.Entry> entries = new HashMap<>();
+        for (Manifest.Entry entry : base.read()) {
+            entries.put(Manifest.shardKey(entry.shard), entry);
+        }
+        this.baseManifests.put(type, base);
+        this.baseEntries.put(type, entries);
+    }
+
+    /*
+     * Make sure the files written by this run never overwrite the files of
+     * previous runs, which are still needed by compaction
+     */
+    private void bumpNextId() {
+        int max = -1;
+        for (HugeType type : SHARDED_TYPES) {
+            Pattern pattern = dataFilePattern(type);
+            for (String file : this.directory.files()) {
+                Matcher matcher = pattern.matcher(file);
+                if (matcher.matches()) {
+                    max = Math.max(max, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        int next = max + 1;
+        nextId.accumulateAndGet(next, Math::max);
+    }
+
+    /*
+     * The data files of an interrupted backup may contain the pages of
+     * unfinished shards and a torn tail, and a compressed file can't be
+     * appended. So copy the ranges of completed shards into new files and
+     * remove the old ones, the unfinished shards will be backup again.
+     */
+    private List<Manifest.Entry> compact(HugeType type, Manifest manifest) {
+        Map<String, List<Manifest.Entry>> entriesOfFile =
+                                          new LinkedHashMap<>();
+        List<Manifest.Entry> entries = new ArrayList<>();
+        for (Manifest.Entry entry : manifest.read()) {
+            if (entry.length() == 0L || entry.directory != null) {
+                // The shard is empty or its data is in base directory
+                entries.add(entry);
+                continue;
+            }
+            entriesOfFile.computeIfAbsent(entry.file, k -> new ArrayList<>())
+                         .add(entry);
+        }
+
+        List<String> files = this.directory.files();
+        Set<String> targets = new HashSet<>();
+        for (Map.Entry<String, List<Manifest.Entry>> e :
+             entriesOfFile.entrySet()) {
+            if (!files.contains(e.getKey())) {
+                continue;
+            }
+            String target = type.string() + nextId.getAndIncrement();
+            if ("binary".equals(this.format)) {
+                target += BinarySerializer.SUFFIX;
+            }
+            String targetFile = target + this.directory.suffix(this.compress);
+            E.checkState(!targetFile.equals(e.getKey()),
+                         "Can't compact file '%s' to itself", e.getKey());
+            targets.add(targetFile);
+            entries.addAll(this.compactFile(e.getKey(), e.getValue(), target));
+        }
+
+        Pattern pattern = dataFilePattern(type);
+        for (String file : files) {
+            if (pattern.matcher(file).matches() && !targets.contains(file)) {
+                this.directory.removeFile(file);
+            }
+        }
+        return entries;
+    }
+
+    private List<Manifest.Entry> compactFile(String source,
+                                             List<Manifest.Entry> entries,
+                                             String target) {
+        entries.sort(Comparator.comparingLong(entry -> entry.begin));
+        long readable = this.readableLength(source);
+        List<Manifest.Entry> moved = new ArrayList<>();
+        OutputStream os = this.directory.outputStream(target, this.compress,
+                                                      true);
+        try (InputStream is = this.directory.inputStream(source);
+             CountingOutputStream cos = new CountingOutputStream(os)) {
+            long position = 0L;
+            for (Manifest.Entry entry : entries) {
+                if (entry.begin < position || entry.end > readable) {
+                    continue;
+                }
+                long begin = cos.getByteCount();
+                IOUtils.copyLarge(is, cos, entry.begin - position,
+                                  entry.length());
+                position = entry.end;
+                moved.add(entry.moveTo(target + this.directory.suffix(
+                                       this.compress), begin));
+            }
+        } catch (IOException e) {
+            throw new ToolsException("Failed to compact file '%s' to '%s'",
+                                     e, source, target);
+        } finally {
+            Directory.closeAndIgnoreException(os);
+        }
+        return moved;
+    }
+
+    /*
+     * The bytes after a torn tail can't be read, count the readable ones
+     */
+    private long readableLength(String file) {
+        long length = 0L;
+        InputStream is = null;
+        try {
+            is = this.directory.inputStream(file);
+            byte[] buffer = new byte[LBUF_SIZE * 8];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                length += read;
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Stop at the first byte can't be read
+        } finally {
+            Directory.closeAndIgnoreException(is);
+        }
+        return length;
+    }
+
+    /*
+     * The data file is named with the type, the id of file, the optional
+     * binary suffix and the optional suffix of codec, like vertices3.bin.lz4
+     */
+    private static Pattern dataFilePattern(HugeType type) {
+        StringBuilder codecs = new StringBuilder();
+        for (CompressCodec codec : CompressCodec.values()) {
+            if (codec == CompressCodec.NONE) {
+                continue;
+            }
+            if (codecs.length() > 0) {
+                codecs.append('|');
+            }
+            codecs.append(Pattern.quote(codec.suffix()));
+        }
+        return Pattern.compile(String.format(
+                               "%s(\\d+)(%s)?(%s)?",
+                               Pattern.quote(type.string()),
+                               Pattern.quote(BinarySerializer.SUFFIX),
+                               codecs));
+    }
+
     protected void removeShardsFilesIfExists() {
         File logDir = new File(this.logDir());
         E.checkArgument(logDir.exists() && logDir.isDirectory(),
@@ -473,13 +1466,22 @@ public class BackupManager extends BackupRestoreBaseManager {
     }
 
     private static boolean isTimeoutException(ToolsException e) {
-        return e.getCause() != null && e.getCause().getCause() != null &&
-               e.getCause().getCause().getMessage().contains("Read timed out");
+        return causedBy(e, "Read timed out");
     }
 
     private static boolean isLimitExceedException(ToolsException e) {
-        return e.getCause() != null &&
-               e.getCause().getMessage().contains("Too many records");
+        return causedBy(e, "Too many records");
+    }
+
+    private static boolean causedBy(Throwable e, String reason) {
+        for (Throwable t = e.getCause(); t != null && t != t.getCause();
+             t = t.getCause()) {
+            String message = t.getMessage();
+            if (message != null && message.contains(reason)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static String exceptionStackTrace(Object e) {
@@ -497,4 +1499,59 @@ public class BackupManager extends BackupRestoreBaseManager {
         }
         return sb.toString();
     }
+
+    private static class ShardPage {
+
+        private static final ShardPage END = new ShardPage(null, null);
+
+        private final List<?> results;
+        // The elements of backup format fetched by passthrough in advance
+        private final byte[] bytes;
+        // The count of elements in response
+        private final long count;
+        // The count of elements written by passthrough or in bytes
+        private final long written;
+        private final String page;
+        private final Throwable error;
+
+        public ShardPage(List<?> results, String page) {
+            this.results = results;
+            this.bytes = null;
+            this.count = results == null ? 0L : results.size();
+            this.written = 0L;
+            this.page = page;
+            this.error = null;
+        }
+
+        public ShardPage(long count, long written, String page) {
+            this.results = null;
+            this.bytes = null;
+            this.count = count;
+            this.written = written;
+            this.page = page;
+            this.error = null;
+        }
+
+        public ShardPage(byte[] bytes, long written) {
+            this.results = null;
+            this.bytes = bytes;
+            this.count = written;
+            this.written = written;
+            this.page = null;
+            this.error = null;
+        }
+
+        public ShardPage(Throwable error) {
+            this.results = null;
+            this.bytes = null;
+            this.count = 0L;
+            this.written = 0L;
+            this.page = null;
+            this.error = error;
+        }
+
+        public boolean hasMore() {
+            return this.error == null && this.count > 0L;
+        }
+    }
 }
@@ -32,8 +32,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
+import org.apache.commons.io.output.CountingOutputStream;
+
 import com.baidu.hugegraph.api.API;
 import com.baidu.hugegraph.base.Directory;
+import com.baidu.hugegraph.base.Endpoints;
 import com.baidu.hugegraph.base.HdfsDirectory;
 import com.baidu.hugegraph.base.LocalDirectory;
 import com.baidu.hugegraph.base.Printer;
@@ -42,6 +45,7 @@ import com.baidu.hugegraph.base.ToolClient;
 import com.baidu.hugegraph.cmd.SubCommands;
 import com.baidu.hugegraph.concurrent.KeyLock;
 import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.serializer.BinarySerializer;
 import com.baidu.hugegraph.structure.GraphElement;
 import com.baidu.hugegraph.structure.constant.HugeType;
 import com.baidu.hugegraph.structure.graph.Edge;
@@ -64,7 +68,9 @@ public class BackupRestoreBaseManager extends RetryManager {
     protected static KeyLock locks = new KeyLock();
     private String logDir;
     protected Directory directory;
-    private Map<String, OutputStream> outputStreams;
+    protected BinarySerializer binarySerializer;
+    private Map<String, String> hdfsConf;
+    private Map<String, CountingOutputStream> outputStreams;
     private Map<String, InputStream> inputStreams;
 
     public BackupRestoreBaseManager(ToolClient.ConnectionInfo info,
@@ -78,6 +84,12 @@ public class BackupRestoreBaseManager extends RetryManager {
         this.threadsNum(cmd.threadsNum());
         assert cmd.retry() > 0;
         this.retry(cmd.retry());
+        this.retryDelay(cmd.retryDelay(), cmd.maxRetryDelay());
+        this.failFast(cmd.failFast());
+        if (cmd.adaptiveConcurrency()) {
+            this.adaptiveConcurrency(cmd.maxConcurrency(),
+                                     cmd.latencyTarget());
+        }
         LocalDirectory.ensureDirectoryExist(cmd.logDir());
         this.logDir(cmd.logDir());
         this.directory(cmd.directory(), cmd.hdfsConf());
@@ -107,13 +119,8 @@ public class BackupRestoreBaseManager extends RetryManager {
     protected long write(String path, HugeType type,
                          List<?> list, boolean compress) {
         OutputStream os = this.outputStream(path, compress);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(LBUF_SIZE);
         try {
-            String key = String.format("{\"%s\": ", type.string());
-            baos.write(key.getBytes(API.CHARSET));
-            this.client.mapper().writeValue(baos, list);
-            baos.write("}\n".getBytes(API.CHARSET));
-            os.write(baos.toByteArray());
+            os.write(this.serialize(type, list));
         } catch (Throwable e) {
             throw new ToolsException("Failed to serialize %s to %s",
                                      e, type, path);
@@ -121,6 +128,28 @@ public class BackupRestoreBaseManager extends RetryManager {
         return list.size();
     }
 
+    /**
+     * Write the bytes which are already in the format of file as they are
+     */
+    protected void write(String path, byte[] bytes, boolean compress) {
+        OutputStream os = this.outputStream(path, compress);
+        try {
+            os.write(bytes);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to write %s", e, path);
+        }
+    }
+
+    protected byte[] serialize(HugeType type, List<?> list)
+                               throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(LBUF_SIZE);
+        String key = String.format("{\"%s\": ", type.string());
+        baos.write(key.getBytes(API.CHARSET));
+        this.client.mapper().writeValue(baos, list);
+        baos.write("}\n".getBytes(API.CHARSET));
+        return baos.toByteArray();
+    }
+
     protected long write(String path, HugeType type, List<?> list,
                          boolean compress, String format,
                          String label, boolean allProperties,
@@ -129,12 +158,29 @@ public class BackupRestoreBaseManager extends RetryManager {
         if (format == null || format.equals("json")) {
             return this.write(path, type, list, compress);
         }
+        if (format.equals("binary")) {
+            return this.writeBinary(path, type, list, compress);
+        }
 
         assert format.equals("text");
         return this.writeText(path, type, list, compress, label,
                               allProperties, properties);
     }
 
+    protected long writeBinary(String path, HugeType type,
+                               List<?> list, boolean compress) {
+        E.checkState(this.binarySerializer != null,
+                     "The binary serializer is not initialized");
+        OutputStream os = this.outputStream(path, compress);
+        try {
+            os.write(this.binarySerializer.encode(type, list));
+        } catch (Throwable e) {
+            throw new ToolsException("Failed to serialize %s to %s",
+                                     e, type, path);
+        }
+        return list.size();
+    }
+
     protected long writeText(String path, HugeType type, List<?> list,
                              boolean compress, String label,
                              boolean allProperties, List<String> properties) {
@@ -192,12 +238,13 @@ public class BackupRestoreBaseManager extends RetryManager {
     }
 
     protected OutputStream outputStream(String file, boolean compress) {
-        OutputStream os = this.outputStreams.get(file);
+        CountingOutputStream os = this.outputStreams.get(file);
         if (os != null) {
             return os;
         }
-        os = this.directory.outputStream(file, compress, true);
-        OutputStream prev = this.outputStreams.putIfAbsent(file, os);
+        OutputStream out = this.directory.outputStream(file, compress, true);
+        os = new CountingOutputStream(out);
+        CountingOutputStream prev = this.outputStreams.putIfAbsent(file, os);
         if (prev != null) {
             Directory.closeAndIgnoreException(os);
             os = prev;
@@ -205,6 +252,27 @@ public class BackupRestoreBaseManager extends RetryManager {
         return os;
     }
 
+    /**
+     * Returns the number of uncompressed bytes written to the file by now
+     */
+    protected long offset(String file) {
+        CountingOutputStream os = this.outputStreams.get(file);
+        return os == null ? 0L : os.getByteCount();
+    }
+
+    protected long flush(String file) {
+        CountingOutputStream os = this.outputStreams.get(file);
+        if (os == null) {
+            return 0L;
+        }
+        try {
+            os.flush();
+        } catch (IOException e) {
+            throw new ToolsException("Failed to flush file '%s'", e, file);
+        }
+        return os.getByteCount();
+    }
+
     protected InputStream inputStream(String file) {
         InputStream is = this.inputStreams.get(file);
         if (is != null) {
@@ -220,13 +288,22 @@ public class BackupRestoreBaseManager extends RetryManager {
     }
 
     protected void directory(String dir, Map<String, String> hdfsConf) {
-        if (hdfsConf == null || hdfsConf.isEmpty()) {
+        this.hdfsConf = hdfsConf;
+        this.directory = this.constructDirectory(dir);
+    }
+
+    /**
+     * Construct a directory on the same file system as the directory of
+     * this backup or restore
+     */
+    protected Directory constructDirectory(String dir) {
+        if (this.hdfsConf == null || this.hdfsConf.isEmpty()) {
             // Local FS directory
-            this.directory = LocalDirectory.constructDir(dir, this.graph());
+            return LocalDirectory.constructDir(dir, this.graph());
         } else {
             // HDFS directory
-            this.directory = HdfsDirectory.constructDir(dir, this.graph(),
-                                                        hdfsConf);
+            return HdfsDirectory.constructDir(dir, this.graph(),
+                                              this.hdfsConf);
         }
     }
 
@@ -275,12 +352,32 @@ public class BackupRestoreBaseManager extends RetryManager {
         Printer.printMap(type + " summary", summary);
 
         Printer.printKV("cost time(s)", this.elapseSeconds());
+        if (this.limiter() != null) {
+            Printer.printKV("concurrency limit", this.limiter().limit());
+        }
+        if (this.retryCounter() > 0L) {
+            Printer.printKV("retry number", this.retryCounter());
+        }
+        if (this.fatalCounter() > 0L) {
+            Printer.printKV("non-retryable failure number",
+                            this.fatalCounter());
+        }
+        Endpoints endpoints = this.client.endpoints();
+        if (endpoints.size() > 1) {
+            for (Endpoints.Endpoint endpoint : endpoints.all()) {
+                Printer.printKV(String.format(
+                                "requests(failures) to '%s'", endpoint),
+                                String.format("%s(%s)", endpoint.requests(),
+                                              endpoint.failures()));
+            }
+        }
     }
 
     @Override
     public void shutdown(String taskType) {
         super.shutdown(taskType);
-        for (Map.Entry<String, OutputStream> e : this.outputStreams.entrySet()) {
+        for (Map.Entry<String, CountingOutputStream> e :
+             this.outputStreams.entrySet()) {
             try {
                 OutputStream os = e.getValue();
                 os.close();
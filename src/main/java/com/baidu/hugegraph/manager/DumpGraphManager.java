@@ -19,28 +19,39 @@
 
 package com.baidu.hugegraph.manager;
 
-import java.io.BufferedOutputStream;
-import java.io.OutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.baidu.hugegraph.api.API;
 import com.baidu.hugegraph.base.LocalDirectory;
 import com.baidu.hugegraph.base.Printer;
 import com.baidu.hugegraph.base.ToolClient;
 import com.baidu.hugegraph.cmd.SubCommands;
+import com.baidu.hugegraph.exception.ToolsException;
 import com.baidu.hugegraph.formatter.Formatter;
 import com.baidu.hugegraph.structure.JsonGraph;
 import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.SortedJsonGraph;
+import com.baidu.hugegraph.structure.SpilledJsonGraph;
 import com.baidu.hugegraph.structure.constant.HugeType;
 import com.baidu.hugegraph.structure.graph.Edge;
 import com.baidu.hugegraph.structure.graph.Vertex;
 
 public class DumpGraphManager extends BackupManager {
 
-    private static final byte[] EOF = "\n".getBytes();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SPILL_DIR = "dump_spill";
+    private static final long MB = 1024L * 1024L;
 
     private final JsonGraph graph;
+    private SpilledJsonGraph spilledGraph;
+    private SortedJsonGraph sortedGraph;
 
     private Formatter dumpFormatter;
 
@@ -59,14 +70,31 @@ public class DumpGraphManager extends BackupManager {
     }
 
     public void init(SubCommands.DumpGraph dump) {
+        this.threadsNum(dump.threadsNum());
         assert dump.retry() > 0;
         this.retry(dump.retry());
+        this.retryDelay(dump.retryDelay(), dump.maxRetryDelay());
         LocalDirectory.ensureDirectoryExist(dump.logDir());
         this.logDir(dump.logDir());
         this.directory(dump.directory(), dump.hdfsConf());
         this.removeShardsFilesIfExists();
         this.ensureDirectoryExist(true);
         this.splitSize(dump.splitSize());
+        if (dump.memoryBudget() > 0) {
+            File spillDir = new File(this.logDir(), SPILL_DIR);
+            long budget = dump.memoryBudget() * MB;
+            if (SubCommands.DumpGraph.SORT_MERGE.equalsIgnoreCase(
+                    dump.joinStrategy())) {
+                this.sortedGraph = new SortedJsonGraph(spillDir,
+                                                       this.client.mapper(),
+                                                       budget);
+            } else {
+                this.spilledGraph = new SpilledJsonGraph(spillDir,
+                                                         this.client.mapper(),
+                                                         budget);
+            }
+        }
+        this.initExecutors();
     }
 
     public void dump() {
@@ -77,6 +105,14 @@ public class DumpGraphManager extends BackupManager {
             this.backupEdges();
 
             // Dump to file
+            if (this.spilledGraph != null) {
+                this.dumpPartitions();
+                return;
+            }
+            if (this.sortedGraph != null) {
+                this.dumpSorted();
+                return;
+            }
             for (String table : this.graph.tables()) {
                 this.submit(() -> dump(table, this.graph.table(table).values()));
             }
@@ -84,19 +120,114 @@ public class DumpGraphManager extends BackupManager {
             throw e;
         } finally {
             this.shutdown(this.type());
+            if (this.spilledGraph != null) {
+                this.spilledGraph.close();
+            }
+            if (this.sortedGraph != null) {
+                this.sortedGraph.close();
+            }
         }
 
         this.printSummary("dump graph");
     }
 
-    private void dump(String file, Collection<JsonVertex> vertices) {
-        try (OutputStream os = this.outputStream(file, false);
-             BufferedOutputStream bos = new BufferedOutputStream(os)) {
-            for (JsonVertex vertex : vertices) {
-                String content = this.dumpFormatter.dump(vertex);
-                bos.write(content.getBytes(API.CHARSET));
-                bos.write(EOF);
+    /*
+     * Dump the partitions one by one, the vertices of each table in each
+     * partition are appended to the file of the table
+     */
+    private void dumpPartitions() {
+        Map<String, Writer> outputs = new HashMap<>();
+        try {
+            this.spilledGraph.join(graph -> {
+                for (String table : graph.tables()) {
+                    Writer writer = outputs.computeIfAbsent(table,
+                                                            this::writer);
+                    Collection<JsonVertex> vertices = graph.table(table)
+                                                           .values();
+                    this.submit(() -> this.dump(writer, vertices));
+                }
+                // Wait to drop the partition before loading the next one
+                this.awaitTasks();
+            });
+        } finally {
+            closeOutputs(outputs);
+        }
+        this.printSummary("dump graph");
+    }
+
+    /*
+     * Dump the vertices merged in the order of id one by one, each vertex
+     * is appended to the file of its table
+     */
+    private void dumpSorted() {
+        Map<String, Writer> outputs = new HashMap<>();
+        // Keep the state of format for each file rather than each vertex
+        Map<String, Formatter.VertexWriter> writers = new HashMap<>();
+        try {
+            this.sortedGraph.join(vertex -> {
+                String table = vertex.getLabel();
+                Formatter.VertexWriter writer = writers.get(table);
+                if (writer == null) {
+                    Writer output = this.writer(table);
+                    outputs.put(table, output);
+                    writer = this.vertexWriter(output);
+                    writers.put(table, writer);
+                }
+                try {
+                    writer.write(vertex);
+                } catch (Exception e) {
+                    throw new ToolsException("Failed to write vertex", e);
+                }
+            });
+        } finally {
+            // Flush the formatters before closing the files
+            closeOutputs(writers);
+            closeOutputs(outputs);
+        }
+        this.printSummary("dump graph");
+    }
+
+    private static void closeOutputs(
+                        Map<String, ? extends AutoCloseable> outputs) {
+        for (Map.Entry<String, ? extends AutoCloseable> e :
+             outputs.entrySet()) {
+            try {
+                e.getValue().close();
+            } catch (Exception exception) {
+                Printer.print("Failed to close file '%s'", e.getKey());
             }
+        }
+    }
+
+    /*
+     * The vertices are formatted to the buffer of writer directly, rather
+     * than to a string and bytes for each of them
+     */
+    private Writer writer(String file) {
+        return new BufferedWriter(new OutputStreamWriter(
+                                  this.outputStream(file, false),
+                                  StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private Formatter.VertexWriter vertexWriter(Writer writer) {
+        try {
+            return this.dumpFormatter.writer(writer);
+        } catch (Exception e) {
+            throw new ToolsException("Failed to open vertex writer", e);
+        }
+    }
+
+    private void dump(Writer writer, Collection<JsonVertex> vertices) {
+        try {
+            this.dumpFormatter.dump(vertices, writer);
+        } catch (Exception e) {
+            throw new ToolsException("Failed to write vertex", e);
+        }
+    }
+
+    private void dump(String file, Collection<JsonVertex> vertices) {
+        try (Writer writer = this.writer(file)) {
+            this.dumpFormatter.dump(vertices, writer);
         } catch (Throwable e) {
             Printer.print("Failed to write vertex: %s", e);
         }
@@ -108,12 +239,24 @@ public class DumpGraphManager extends BackupManager {
         switch (type) {
             case VERTEX:
                 for (Object vertex : list) {
-                    this.graph.put((Vertex) vertex);
+                    if (this.spilledGraph != null) {
+                        this.spilledGraph.put((Vertex) vertex);
+                    } else if (this.sortedGraph != null) {
+                        this.sortedGraph.put((Vertex) vertex);
+                    } else {
+                        this.graph.put((Vertex) vertex);
+                    }
                 }
                 break;
             case EDGE:
                 for (Object edge : list) {
-                    this.graph.put((Edge) edge);
+                    if (this.spilledGraph != null) {
+                        this.spilledGraph.put((Edge) edge);
+                    } else if (this.sortedGraph != null) {
+                        this.sortedGraph.put((Edge) edge);
+                    } else {
+                        this.graph.put((Edge) edge);
+                    }
                 }
                 break;
             default:
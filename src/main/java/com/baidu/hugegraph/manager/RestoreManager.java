@@ -19,31 +19,83 @@
 
 package com.baidu.hugegraph.manager;
 
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import com.baidu.hugegraph.base.Directory;
+import com.baidu.hugegraph.base.Endpoints;
+import com.baidu.hugegraph.base.Journal;
+import com.baidu.hugegraph.base.Manifest;
 import com.baidu.hugegraph.base.Printer;
 import com.baidu.hugegraph.base.ToolClient;
 import com.baidu.hugegraph.cmd.SubCommands;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.serializer.BinarySerializer;
+import com.baidu.hugegraph.serializer.JsonBatchReader;
+import com.baidu.hugegraph.serializer.SchemaDictionary;
+import com.baidu.hugegraph.structure.GraphElement;
 import com.baidu.hugegraph.structure.constant.GraphMode;
 import com.baidu.hugegraph.structure.constant.HugeType;
 import com.baidu.hugegraph.structure.constant.IdStrategy;
 import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Shard;
 import com.baidu.hugegraph.structure.graph.Vertex;
 import com.baidu.hugegraph.structure.schema.EdgeLabel;
 import com.baidu.hugegraph.structure.schema.IndexLabel;
 import com.baidu.hugegraph.structure.schema.PropertyKey;
 import com.baidu.hugegraph.structure.schema.VertexLabel;
+import com.baidu.hugegraph.util.AdaptiveBatch;
+import com.baidu.hugegraph.util.BatchCombiner;
 import com.baidu.hugegraph.util.E;
 
 public class RestoreManager extends BackupRestoreBaseManager {
 
+    private static final Runnable END = () -> {};
+
     private GraphMode mode = null;
     private boolean clean;
+    private int readerNum;
+    private ExecutorService readers;
+    private AdaptiveBatch vertexBatch;
+    private AdaptiveBatch edgeBatch;
+    private boolean concurrentTypes;
+    private BlockingQueue<Runnable> streamQueue;
+    private Journal journal;
+    private final AtomicLong skipCounter = new AtomicLong(0);
+    // The writes queued by current thread since the last checkpoint
+    private final ThreadLocal<List<CompletableFuture<?>>> pendingWrites =
+                  ThreadLocal.withInitial(ArrayList::new);
 
-    private Map<String, Long> primaryKeyVLs = null;
+    private volatile Map<String, Long> primaryKeyVLs = null;
+    private final Map<String, Directory> directories =
+                                         new ConcurrentHashMap<>();
+    private final Map<String, BinarySerializer> serializers =
+                                                new ConcurrentHashMap<>();
 
     public RestoreManager(ToolClient.ConnectionInfo info) {
         super(info, "restore");
@@ -53,6 +105,23 @@ public class RestoreManager extends BackupRestoreBaseManager {
         super.init(restore);
         this.ensureDirectoryExist(false);
         this.clean = restore.clean();
+        this.readerNum = restore.readerNum();
+        this.readers = Executors.newFixedThreadPool(this.readerNum);
+        this.concurrentTypes = restore.concurrentTypes();
+        if (restore.resume()) {
+            // The backup directory is left untouched unless resuming
+            this.journal = new Journal(this.directory, Journal.RESTORE);
+            this.journal.open(true);
+        }
+        if (restore.adaptiveBatch()) {
+            // Vertices and edges differ a lot in size, adapt separately
+            this.vertexBatch = new AdaptiveBatch(BATCH,
+                                                 restore.maxBatchSize(),
+                                                 restore.batchLatency());
+            this.edgeBatch = new AdaptiveBatch(BATCH,
+                                               restore.maxBatchSize(),
+                                               restore.batchLatency());
+        }
     }
 
     public void mode(GraphMode mode) {
@@ -69,10 +138,33 @@ public class RestoreManager extends BackupRestoreBaseManager {
         }
     }
 
+    @Override
+    public void shutdown(String taskType) {
+        if (this.readers != null) {
+            this.readers.shutdownNow();
+        }
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        super.shutdown(taskType);
+    }
+
     public void doRestore(List<HugeType> types) {
         E.checkNotNull(this.mode, "mode");
         this.startTimer();
+        boolean concurrent = this.concurrentTypes &&
+                             types.contains(HugeType.VERTEX) &&
+                             types.contains(HugeType.EDGE);
+        boolean elementsRestored = false;
         for (HugeType type : types) {
+            if (concurrent && (type == HugeType.VERTEX ||
+                               type == HugeType.EDGE)) {
+                if (!elementsRestored) {
+                    this.restoreVerticesAndEdges();
+                    elementsRestored = true;
+                }
+                continue;
+            }
             switch (type) {
                 case VERTEX:
                     this.restoreVertices(type);
@@ -103,95 +195,286 @@ public class RestoreManager extends BackupRestoreBaseManager {
         }
     }
 
+    @Override
+    protected void printSummary() {
+        super.printSummary();
+        if (this.skipCounter.get() > 0L) {
+            Printer.printKV("skipped restored number",
+                            this.skipCounter.get());
+        }
+    }
+
+    /**
+     * Returns the sinks to restore the schema and elements fetched by a
+     * backup on the fly rather than from files. The schema is restored in
+     * the calling thread, the vertices and edges are queued to the writer
+     * threads until finishStreaming() is called.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<HugeType, Consumer<List<?>>> startStreaming() {
+        E.checkNotNull(this.mode, "mode");
+        this.startTimer();
+        // Print the total progress since the edges may come with vertices
+        this.concurrentTypes = true;
+        this.streamQueue = this.startWriters();
+        Map<HugeType, Consumer<List<?>>> sinks = new EnumMap<>(HugeType.class);
+        sinks.put(HugeType.PROPERTY_KEY, this.schemaSink(
+                  HugeType.PROPERTY_KEY, list -> {
+            this.restorePropertyKeys((List<PropertyKey>) list);
+        }));
+        sinks.put(HugeType.VERTEX_LABEL, this.schemaSink(
+                  HugeType.VERTEX_LABEL, list -> {
+            this.restoreVertexLabels((List<VertexLabel>) list);
+        }));
+        sinks.put(HugeType.EDGE_LABEL, this.schemaSink(
+                  HugeType.EDGE_LABEL, list -> {
+            this.restoreEdgeLabels((List<EdgeLabel>) list);
+        }));
+        sinks.put(HugeType.INDEX_LABEL, this.schemaSink(
+                  HugeType.INDEX_LABEL, list -> {
+            this.restoreIndexLabels((List<IndexLabel>) list);
+        }));
+        Consumer<List<Vertex>> vertices = this.producer(
+                                          HugeType.VERTEX, this.streamQueue,
+                                          this.vertexConsumer());
+        Consumer<List<Edge>> edges = this.producer(
+                                     HugeType.EDGE, this.streamQueue,
+                                     this.edgeConsumer());
+        // The schema has been restored when the vertices or edges come
+        sinks.put(HugeType.VERTEX, list -> {
+            this.initPrimaryKeyVLs();
+            vertices.accept((List<Vertex>) list);
+        });
+        sinks.put(HugeType.EDGE, list -> {
+            this.initPrimaryKeyVLs();
+            edges.accept((List<Edge>) list);
+        });
+        return sinks;
+    }
+
+    /**
+     * Wait for the queued vertices and edges to be written, the directory
+     * is kept for resuming if the backup is not completed
+     */
+    public void finishStreaming(boolean completed) {
+        try {
+            if (this.streamQueue != null) {
+                this.stopWriters(this.streamQueue);
+            }
+            this.awaitTasks();
+            this.printVerticesFinished();
+            this.printEdgesFinished();
+            this.printSummary();
+            if (this.clean && completed) {
+                this.removeDirectory();
+            }
+        } finally {
+            this.shutdown(this.type());
+        }
+    }
+
+    /**
+     * Run the action once all the vertices and edges queued by current
+     * thread since the last call have been written, the action is dropped
+     * if any of them failed
+     */
+    public void afterWritten(Runnable action) {
+        List<CompletableFuture<?>> writes = this.pendingWrites.get();
+        CompletableFuture<?>[] futures = writes.toArray(
+                                         new CompletableFuture<?>[0]);
+        writes.clear();
+        CompletableFuture.allOf(futures).thenRun(() -> {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                this.taskFailed("writing checkpoint", e);
+            }
+        });
+    }
+
+    private void checkpoint(String key) {
+        // Clear the pending writes of current thread even if not journaled
+        this.afterWritten(() -> this.journal(key));
+    }
+
+    private void journal(String key) {
+        if (this.journal != null) {
+            this.journal.append(key);
+        }
+    }
+
+    private boolean restored(String key) {
+        if (this.journal != null && this.journal.contains(key)) {
+            this.skipCounter.getAndIncrement();
+            return true;
+        }
+        return false;
+    }
+
+    private Consumer<List<?>> schemaSink(HugeType type,
+                                         Consumer<List<?>> consumer) {
+        return list -> {
+            if (this.restored(type.string())) {
+                return;
+            }
+            consumer.accept(list);
+            this.journal(type.string());
+        };
+    }
+
     private void restoreVertices(HugeType type) {
         Printer.print("Vertices restore started");
         this.initPrimaryKeyVLs();
-        List<String> files = this.filesWithPrefix(HugeType.VERTEX);
-        printRestoreFiles(type, files);
-        Printer.printInBackward("Vertices has been restored: ");
-        BiConsumer<String, String> consumer = (t, l) -> {
-            List<Vertex> vertices = this.readList(t, Vertex.class, l);
-            int size = vertices.size();
-            for (int start = 0; start < size; start += BATCH) {
-                int end = Math.min(start + BATCH, size);
-                List<Vertex> subVertices = vertices.subList(start, end);
-                for (Vertex vertex : subVertices) {
-                    if (this.primaryKeyVLs.containsKey(vertex.label())) {
-                        vertex.id(null);
-                    }
-                }
-                this.retry(() -> this.client.graph().addVertices(subVertices),
-                           "restoring vertices");
-                this.vertexCounter.getAndAdd(end - start);
-                Printer.printInBackward(this.vertexCounter.get());
-            }
-        };
-        for (String file : files) {
-            this.submit(() -> {
-                try {
-                    this.restore(type, file, consumer);
-                } catch (Throwable e) {
-                    Printer.print("When restoring vertices in file '%s' " +
-                                  "occurs exception '%s'", file, e);
-                }
-            });
-        }
+        this.restoreElements(type, Vertex.class,
+                             "Vertices has been restored: ",
+                             this.vertexConsumer());
         this.awaitTasks();
         Printer.print("%d", this.vertexCounter.get());
-        Printer.print("Vertices restore finished: %d",
-                      this.vertexCounter.get());
+        this.printVerticesFinished();
     }
 
     private void restoreEdges(HugeType type) {
         Printer.print("Edges restore started");
         this.initPrimaryKeyVLs();
-        List<String> files = this.filesWithPrefix(HugeType.EDGE);
-        printRestoreFiles(type, files);
-        Printer.printInBackward("Edges has been restored: ");
-        BiConsumer<String, String> consumer = (t, l) -> {
-            List<Edge> edges = this.readList(t, Edge.class, l);
-            int size = edges.size();
-            for (int start = 0; start < size; start += BATCH) {
-                int end = Math.min(start + BATCH, size);
-                List<Edge> subEdges = edges.subList(start, end);
-                /*
-                 * Edge id is concat using source and target vertex id and
-                 * vertices of primary key id strategy might have changed
-                 * their id
-                 */
-                this.updateVertexIdInEdge(subEdges);
-                this.retry(() -> this.client.graph().addEdges(subEdges, false),
-                           "restoring edges");
-                this.edgeCounter.getAndAdd(end - start);
-                Printer.printInBackward(this.edgeCounter.get());
+        this.restoreElements(type, Edge.class,
+                             "Edges has been restored: ",
+                             this.edgeConsumer());
+        this.awaitTasks();
+        Printer.print("%d", this.edgeCounter.get());
+        this.printEdgesFinished();
+    }
+
+    /*
+     * Restore the vertices and edges at the same time by the same writers,
+     * which is safe since the edges are added without checking vertices,
+     * and the ids of vertices with primary key id strategy in edges are
+     * rewritten by the schema only
+     */
+    private void restoreVerticesAndEdges() {
+        Printer.print("Vertices and edges restore started");
+        this.initPrimaryKeyVLs();
+        BlockingQueue<Runnable> queue = this.startWriters();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            futures.addAll(this.readFiles(HugeType.VERTEX, Vertex.class,
+                                          null, this.producer(
+                                          HugeType.VERTEX, queue,
+                                          this.vertexConsumer())));
+            futures.addAll(this.readFiles(HugeType.EDGE, Edge.class,
+                                          null, this.producer(
+                                          HugeType.EDGE, queue,
+                                          this.edgeConsumer())));
+            Printer.printInBackward("Vertices and edges has been " +
+                                    "restored: ");
+            this.awaitReaders(futures);
+        } finally {
+            this.stopWriters(queue);
+        }
+        this.awaitTasks();
+        Printer.print("%d", this.vertexCounter.get() +
+                            this.edgeCounter.get());
+        this.printVerticesFinished();
+        this.printEdgesFinished();
+    }
+
+    private Consumer<List<Vertex>> vertexConsumer() {
+        return vertices -> {
+            for (Vertex vertex : vertices) {
+                if (this.primaryKeyVLs.containsKey(vertex.label())) {
+                    vertex.id(null);
+                }
             }
+            this.writeBatches(vertices, this.vertexBatch, (e, subVertices) -> {
+                e.graph().addVertices(subVertices);
+            }, "restoring vertices", this.vertexCounter);
+        };
+    }
+
+    private Consumer<List<Edge>> edgeConsumer() {
+        return edges -> {
+            /*
+             * Edge id is concat using source and target vertex id and
+             * vertices of primary key id strategy might have changed
+             * their id
+             */
+            this.updateVertexIdInEdge(edges);
+            this.writeBatches(edges, this.edgeBatch, (e, subEdges) -> {
+                e.graph().addEdges(subEdges, false);
+            }, "restoring edges", this.edgeCounter);
         };
-        for (String file : files) {
-            this.submit(() -> {
+    }
+
+    private void printVerticesFinished() {
+        Printer.print("Vertices restore finished: %d",
+                      this.vertexCounter.get());
+        if (this.vertexBatch != null) {
+            Printer.print("Vertices batch size adapted to: %d",
+                          this.vertexBatch.size());
+        }
+    }
+
+    private void printEdgesFinished() {
+        Printer.print("Edges restore finished: %d", this.edgeCounter.get());
+        if (this.edgeBatch != null) {
+            Printer.print("Edges batch size adapted to: %d",
+                          this.edgeBatch.size());
+        }
+    }
+
+    /*
+     * Write the elements in batches of BATCH, or of the adaptive size if
+     * enabled. A batch failed for its size is retried in smaller batches
+     * before the normal retries. The batches are spread across the servers
+     * of target graph if there are several.
+     */
+    private <T> void writeBatches(List<T> elements, AdaptiveBatch adaptive,
+                                  BiConsumer<Endpoints.Endpoint, List<T>>
+                                  writer, String desc, AtomicLong counter) {
+        int size = elements.size();
+        int start = 0;
+        while (start < size) {
+            int batch = adaptive == null ? BATCH : adaptive.size();
+            int end = Math.min(start + batch, size);
+            List<T> subElements = elements.subList(start, end);
+            if (adaptive == null) {
+                this.retry(e -> {
+                    writer.accept(e, subElements);
+                    return null;
+                }, desc);
+            } else {
+                long begin = System.currentTimeMillis();
                 try {
-                    this.restore(type, file, consumer);
-                } catch (Throwable e) {
-                    Printer.print("When restoring edges in file '%s' " +
-                                  "occurs exception '%s'", file, e);
+                    this.limit(e -> {
+                        writer.accept(e, subElements);
+                        return null;
+                    });
+                    adaptive.record(subElements.size(),
+                                    System.currentTimeMillis() - begin);
+                } catch (RuntimeException e) {
+                    if (adaptive.shrink(e, subElements.size())) {
+                        continue;
+                    }
+                    this.retry(endpoint -> {
+                        writer.accept(endpoint, subElements);
+                        return null;
+                    }, desc);
                 }
-            });
+            }
+            counter.getAndAdd(end - start);
+            if (this.concurrentTypes) {
+                Printer.printInBackward(this.vertexCounter.get() +
+                                        this.edgeCounter.get());
+            } else {
+                Printer.printInBackward(counter.get());
+            }
+            start = end;
         }
-        this.awaitTasks();
-        Printer.print("%d", this.edgeCounter.get());
-        Printer.print("Edges restore finished: %d", this.edgeCounter.get());
     }
 
     private void restorePropertyKeys(HugeType type) {
         Printer.print("Property key restore started");
         BiConsumer<String, String> consumer = (t, l) -> {
-            for (PropertyKey pk : this.readList(t, PropertyKey.class, l)) {
-                if (this.mode == GraphMode.MERGING) {
-                    pk.resetId();
-                    pk.checkExist(false);
-                }
-                this.client.schema().addPropertyKey(pk);
-                this.propertyKeyCounter.getAndIncrement();
-            }
+            this.restorePropertyKeys(this.readList(t, PropertyKey.class, l));
         };
         String path = this.fileWithPrefix(HugeType.PROPERTY_KEY);
         this.restore(type, path, consumer);
@@ -199,17 +482,21 @@ public class RestoreManager extends BackupRestoreBaseManager {
                       this.propertyKeyCounter.get());
     }
 
+    private void restorePropertyKeys(List<PropertyKey> pks) {
+        for (PropertyKey pk : pks) {
+            if (this.mode == GraphMode.MERGING) {
+                pk.resetId();
+                pk.checkExist(false);
+            }
+            this.client.schema().addPropertyKey(pk);
+            this.propertyKeyCounter.getAndIncrement();
+        }
+    }
+
     private void restoreVertexLabels(HugeType type) {
         Printer.print("Vertex label restore started");
         BiConsumer<String, String> consumer = (t, l) -> {
-            for (VertexLabel vl : this.readList(t, VertexLabel.class, l)) {
-                if (this.mode == GraphMode.MERGING) {
-                    vl.resetId();
-                    vl.checkExist(false);
-                }
-                this.client.schema().addVertexLabel(vl);
-                this.vertexLabelCounter.getAndIncrement();
-            }
+            this.restoreVertexLabels(this.readList(t, VertexLabel.class, l));
         };
         String path = this.fileWithPrefix(HugeType.VERTEX_LABEL);
         this.restore(type, path, consumer);
@@ -217,17 +504,21 @@ public class RestoreManager extends BackupRestoreBaseManager {
                       this.vertexLabelCounter.get());
     }
 
+    private void restoreVertexLabels(List<VertexLabel> vls) {
+        for (VertexLabel vl : vls) {
+            if (this.mode == GraphMode.MERGING) {
+                vl.resetId();
+                vl.checkExist(false);
+            }
+            this.client.schema().addVertexLabel(vl);
+            this.vertexLabelCounter.getAndIncrement();
+        }
+    }
+
     private void restoreEdgeLabels(HugeType type) {
         Printer.print("Edge label restore started");
         BiConsumer<String, String> consumer = (t, l) -> {
-            for (EdgeLabel el : this.readList(t, EdgeLabel.class, l)) {
-                if (this.mode == GraphMode.MERGING) {
-                    el.resetId();
-                    el.checkExist(false);
-                }
-                this.client.schema().addEdgeLabel(el);
-                this.edgeLabelCounter.getAndIncrement();
-            }
+            this.restoreEdgeLabels(this.readList(t, EdgeLabel.class, l));
         };
         String path = this.fileWithPrefix(HugeType.EDGE_LABEL);
         this.restore(type, path, consumer);
@@ -235,17 +526,21 @@ public class RestoreManager extends BackupRestoreBaseManager {
                       this.edgeLabelCounter.get());
     }
 
+    private void restoreEdgeLabels(List<EdgeLabel> els) {
+        for (EdgeLabel el : els) {
+            if (this.mode == GraphMode.MERGING) {
+                el.resetId();
+                el.checkExist(false);
+            }
+            this.client.schema().addEdgeLabel(el);
+            this.edgeLabelCounter.getAndIncrement();
+        }
+    }
+
     private void restoreIndexLabels(HugeType type) {
         Printer.print("Index label restore started");
         BiConsumer<String, String> consumer = (t, l) -> {
-            for (IndexLabel il : this.readList(t, IndexLabel.class, l)) {
-                if (this.mode == GraphMode.MERGING) {
-                    il.resetId();
-                    il.checkExist(false);
-                }
-                this.client.schema().addIndexLabel(il);
-                this.indexLabelCounter.getAndIncrement();
-            }
+            this.restoreIndexLabels(this.readList(t, IndexLabel.class, l));
         };
         String path = this.fileWithPrefix(HugeType.INDEX_LABEL);
         this.restore(type, path, consumer);
@@ -253,22 +548,380 @@ public class RestoreManager extends BackupRestoreBaseManager {
                       this.indexLabelCounter.get());
     }
 
+    private void restoreIndexLabels(List<IndexLabel> ils) {
+        for (IndexLabel il : ils) {
+            if (this.mode == GraphMode.MERGING) {
+                il.resetId();
+                il.checkExist(false);
+            }
+            this.client.schema().addIndexLabel(il);
+            this.indexLabelCounter.getAndIncrement();
+        }
+    }
+
     private void restore(HugeType type, String file,
                          BiConsumer<String, String> consumer) {
+        if (this.restored(type.string())) {
+            Printer.print("Skip %s since it has been restored", type);
+            return;
+        }
         this.read(file, type, consumer);
+        this.journal(type.string());
+    }
+
+    /*
+     * Returns the ranges of shards recorded in manifest grouped by directory
+     * and file, or null if there is no manifest. The data of shards may be in
+     * the directories of base backups if this is an incremental backup, and
+     * the bytes of unfinished shards in data files are ignored, which are
+     * reported to be backed up again by resuming the backup.
+     */
+    private Map<String, Map<String, List<Manifest.Entry>>> ranges(
+                                                           HugeType type) {
+        Manifest manifest = new Manifest(this.directory, this.client.mapper(),
+                                         type);
+        if (!manifest.exists()) {
+            return null;
+        }
+        Map<String, Map<String, List<Manifest.Entry>>> entries =
+                                                      new LinkedHashMap<>();
+        Set<String> completed = new HashSet<>();
+        boolean incremental = false;
+        for (Manifest.Entry entry : manifest.read()) {
+            completed.add(Manifest.shardKey(entry.shard));
+            incremental |= entry.directory != null;
+            if (entry.length() == 0L) {
+                continue;
+            }
+            String dir = entry.directory != null ?
+                         entry.directory : this.directory.directory();
+            entries.computeIfAbsent(dir, k -> new LinkedHashMap<>())
+                   .computeIfAbsent(entry.file, k -> new ArrayList<>())
+                   .add(entry);
+        }
+        this.printIncompleteShards(type, manifest.readShards(), completed);
+        if (incremental) {
+            this.checkIncrementalTarget(type);
+        }
+        return entries;
+    }
+
+    /*
+     * The elements removed since the base backup are not recorded by an
+     * incremental backup, which is restored as a whole with the shards in
+     * base backups, so it can only be restored into a graph without the
+     * type of elements, otherwise the removed ones would be left
+     */
+    private void checkIncrementalTarget(HugeType type) {
+        if (this.journal != null && this.journal.size() > 0) {
+            // The elements are written by the resumed restore
+            return;
+        }
+        List<?> elements = type == HugeType.VERTEX ?
+                           this.client.graph().listVertices(1) :
+                           this.client.graph().listEdges(1);
+        E.checkArgument(elements.isEmpty(),
+                        "The incremental backup can't be restored into " +
+                        "graph '%s' which has %s, since the %s removed " +
+                        "since base backup are not recorded",
+                        this.graph(), type.string(), type.string());
+    }
+
+    private void printIncompleteShards(HugeType type, List<Shard> shards,
+                                       Set<String> completed) {
+        if (shards == null) {
+            return;
+        }
+        int incomplete = 0;
+        for (Shard shard : shards) {
+            if (!completed.contains(Manifest.shardKey(shard))) {
+                incomplete++;
+            }
+        }
+        if (incomplete > 0) {
+            Printer.print("%s of %s shards of %s are not completed in " +
+                          "backup and are skipped, resume the backup with " +
+                          "'--resume true' to complete them", incomplete,
+                          shards.size(), type.string());
+        }
+    }
+
+    private static List<String> rangeFiles(
+            Map<String, Map<String, List<Manifest.Entry>>> ranges) {
+        List<String> files = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<Manifest.Entry>>> e :
+             ranges.entrySet()) {
+            for (String file : e.getValue().keySet()) {
+                files.add(e.getKey() + "/" + file);
+            }
+        }
+        return files;
+    }
+
+    /*
+     * Read the vertices or edges in the shard ranges recorded in manifest if
+     * exists, otherwise in all the data files, by the reader threads. The
+     * batches read are put into a bounded queue and written by all the
+     * writer threads, so the writes are not limited by the number of files.
+     */
+    private <T> void restoreElements(HugeType type, Class<T> clazz,
+                                     String progress,
+                                     Consumer<List<T>> consumer) {
+        BlockingQueue<Runnable> queue = this.startWriters();
+        try {
+            this.awaitReaders(this.readFiles(type, clazz, progress,
+                                             this.producer(type, queue,
+                                                           consumer)));
+        } finally {
+            this.stopWriters(queue);
+        }
+    }
+
+    private BlockingQueue<Runnable> startWriters() {
+        // The writes are gated by the limiter if enabled
+        int writers = this.maxConcurrency();
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(2 * writers);
+        for (int i = 0; i < writers; i++) {
+            this.submit(() -> this.runWrites(queue));
+        }
+        return queue;
+    }
+
+    private void stopWriters(BlockingQueue<Runnable> queue) {
+        for (int i = 0; i < this.maxConcurrency(); i++) {
+            if (!this.put(queue, END)) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * Returns the consumer of reader threads which puts the batches read
+     * into the queue as tasks of writers
+     */
+    private <T> Consumer<List<T>> producer(HugeType type,
+                                           BlockingQueue<Runnable> queue,
+                                           Consumer<List<T>> consumer) {
+        return elements -> {
+            CompletableFuture<Void> written = new CompletableFuture<>();
+            Runnable task = () -> {
+                try {
+                    consumer.accept(elements);
+                    written.complete(null);
+                } catch (Throwable e) {
+                    written.completeExceptionally(e);
+                    this.taskFailed("restoring " + type.string(), e);
+                }
+            };
+            this.pendingWrites.get().add(written);
+            if (!this.put(queue, task)) {
+                throw new ToolsException("Canceled reading %s since a " +
+                                         "task failed", type.string());
+            }
+        };
+    }
+
+    /*
+     * Returns false if canceled, the writers may have been canceled by the
+     * failure of a task and never take from the queue
+     */
+    private boolean put(BlockingQueue<Runnable> queue, Runnable task) {
+        try {
+            while (!queue.offer(task, 1L, TimeUnit.SECONDS)) {
+                if (this.failed()) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while reading elements", e);
+        }
+        return true;
+    }
+
+    private void runWrites(BlockingQueue<Runnable> queue) {
+        Runnable task;
+        try {
+            while ((task = queue.take()) != END) {
+                task.run();
+            }
+        } catch (InterruptedException e) {
+            throw new ToolsException("Interrupted while restoring", e);
+        }
+    }
+
+    private static void awaitReaders(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new ToolsException("Failed to read backup files", e);
+            }
+        }
+    }
+
+    /*
+     * Submit the tasks to read the files to the readers, the progress is
+     * printed if not null
+     */
+    private <T> List<Future<?>> readFiles(HugeType type, Class<T> clazz,
+                                          String progress,
+                                          Consumer<List<T>> consumer) {
+        Map<String, Map<String, List<Manifest.Entry>>> ranges =
+                                                       this.ranges(type);
+        List<Future<?>> futures = new ArrayList<>();
+        if (ranges == null) {
+            List<String> files = this.filesWithPrefix(type);
+            printRestoreFiles(type, files);
+            if (progress != null) {
+                Printer.printInBackward(progress);
+            }
+            for (String file : files) {
+                String key = type.string() + ":" + file;
+                if (this.restored(key)) {
+                    continue;
+                }
+                futures.add(this.readers.submit(() -> {
+                    try (InputStream is = this.directory.inputStream(file)) {
+                        this.readElements(type, clazz, this.directory, file,
+                                          is, consumer);
+                        this.checkpoint(key);
+                    } catch (Throwable e) {
+                        this.taskFailed(String.format(
+                                        "restoring %s in file '%s'",
+                                        type.string(), file), e);
+                    } finally {
+                        this.pendingWrites.remove();
+                    }
+                }));
+            }
+        } else {
+            printRestoreFiles(type, rangeFiles(ranges));
+            if (progress != null) {
+                Printer.printInBackward(progress);
+            }
+            for (Map.Entry<String, Map<String, List<Manifest.Entry>>> e :
+                 ranges.entrySet()) {
+                Directory dir = this.directory(e.getKey());
+                for (Map.Entry<String, List<Manifest.Entry>> fileEntries :
+                     e.getValue().entrySet()) {
+                    String file = fileEntries.getKey();
+                    List<Manifest.Entry> entries = fileEntries.getValue();
+                    futures.add(this.readers.submit(() -> {
+                        try {
+                            this.restoreRanges(type, clazz, dir, file,
+                                               entries, consumer);
+                        } catch (Throwable t) {
+                            this.taskFailed(String.format(
+                                            "restoring %s in file '%s/%s'",
+                                            type.string(), dir.directory(),
+                                            file), t);
+                        } finally {
+                            this.pendingWrites.remove();
+                        }
+                    }));
+                }
+            }
+        }
+        return futures;
+    }
+
+    private <T> void restoreRanges(HugeType type, Class<T> clazz,
+                                   Directory dir, String file,
+                                   List<Manifest.Entry> entries,
+                                   Consumer<List<T>> consumer) {
+        entries.sort(Comparator.comparingLong(entry -> entry.begin));
+        try (InputStream is = dir.inputStream(file)) {
+            long position = 0L;
+            for (Manifest.Entry entry : entries) {
+                E.checkState(entry.begin >= position,
+                             "Overlapped shards in file '%s'", file);
+                String key = type.string() + ":" +
+                             Manifest.shardKey(entry.shard);
+                if (this.restored(key)) {
+                    continue;
+                }
+                IOUtils.skipFully(is, entry.begin - position);
+                BoundedInputStream range = new BoundedInputStream(
+                                           is, entry.length());
+                range.setPropagateClose(false);
+                this.readElements(type, clazz, dir, file, range, consumer);
+                this.checkpoint(key);
+                position = entry.end;
+            }
+        } catch (IOException e) {
+            throw new ToolsException("Failed to deserialize %s from %s",
+                                     e, type, file);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void readElements(HugeType type, Class<T> clazz,
+                                  Directory dir, String file, InputStream is,
+                                  Consumer<List<T>> consumer)
+                                  throws IOException {
+        BatchCombiner<T> batches = new BatchCombiner<>(
+                                   () -> this.batchSize(type), consumer);
+        if (BinarySerializer.isBinary(file)) {
+            BinarySerializer serializer = this.binarySerializer(dir);
+            DataInputStream in = BinarySerializer.dataInput(is);
+            List<GraphElement> elements;
+            while ((elements = serializer.decode(type, in)) != null) {
+                batches.add((List<T>) elements);
+            }
+        } else {
+            try (JsonBatchReader<T> reader = new JsonBatchReader<>(
+                                             this.client.mapper(), is,
+                                             type.string(), clazz, BATCH)) {
+                List<T> elements;
+                while ((elements = reader.next()) != null) {
+                    batches.add(elements);
+                }
+            }
+        }
+        batches.flush();
+    }
+
+    /*
+     * The batches read are combined into the size of writes, which grows
+     * past the size of batches in files if adaptive batch is enabled
+     */
+    private int batchSize(HugeType type) {
+        AdaptiveBatch adaptive = type == HugeType.VERTEX ?
+                                 this.vertexBatch : this.edgeBatch;
+        return adaptive == null ? BATCH : adaptive.size();
+    }
+
+    /*
+     * The dictionary of each backup may be different, so the serializer is
+     * created for each directory of the chain of incremental backups
+     */
+    private BinarySerializer binarySerializer(Directory dir) {
+        return this.serializers.computeIfAbsent(dir.directory(), k -> {
+            SchemaDictionary dictionary = SchemaDictionary.load(
+                                          dir, this.client.mapper());
+            return new BinarySerializer(dictionary, this.client.mapper());
+        });
+    }
+
+    private Directory directory(String dir) {
+        if (dir.equals(this.directory.directory())) {
+            return this.directory;
+        }
+        return this.directories.computeIfAbsent(dir, this::constructDirectory);
     }
 
-    private void initPrimaryKeyVLs() {
+    private synchronized void initPrimaryKeyVLs() {
         if (this.primaryKeyVLs != null) {
             return;
         }
-        this.primaryKeyVLs = new HashMap<>();
+        Map<String, Long> primaryKeyVLs = new HashMap<>();
         List<VertexLabel> vertexLabels = this.client.schema().getVertexLabels();
         for (VertexLabel vl : vertexLabels) {
             if (vl.idStrategy() == IdStrategy.PRIMARY_KEY) {
-                this.primaryKeyVLs.put(vl.name(), vl.id());
+                primaryKeyVLs.put(vl.name(), vl.id());
             }
         }
+        this.primaryKeyVLs = primaryKeyVLs;
     }
 
     private void updateVertexIdInEdge(List<Edge> edges) {
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.serializer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.baidu.hugegraph.base.CompressCodec;
+import com.baidu.hugegraph.structure.GraphElement;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The binary backup format, each write of a list of elements is a block:
+ *   block  := varint(count) record{count}
+ *   record := varint(length) bytes{length}
+ *   vertex := label id value property-count property*
+ *   edge   := label id source-label source-id target-label target-id
+ *             property-count property*
+ * The labels and property keys are referred by their varint id in the
+ * schema dictionary plus 1, 0 means the name follows as a string since it
+ * is not in the dictionary. Values are written with a type tag.
+ */
+public class BinarySerializer {
+
+    public static final String SUFFIX = ".bin";
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_STRING = 7;
+    private static final byte TAG_DATE = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_JSON = 10;
+
+    // The epoch is formatted back in the same zone by restore on any host
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMATS =
+            ThreadLocal.withInitial(() -> {
+                SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+                format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                return format;
+            });
+
+    private final SchemaDictionary dictionary;
+    private final ObjectMapper mapper;
+
+    public BinarySerializer(SchemaDictionary dictionary, ObjectMapper mapper) {
+        this.dictionary = dictionary;
+        this.mapper = mapper;
+    }
+
+    public byte[] encode(HugeType type, List<?> elements) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream(BUFFER_SIZE);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(buffer);
+        writeVInt(block, elements.size());
+        for (Object element : elements) {
+            buffer.reset();
+            if (type == HugeType.VERTEX) {
+                this.writeVertex(record, (Vertex) element);
+            } else {
+                assert type == HugeType.EDGE;
+                this.writeEdge(record, (Edge) element);
+            }
+            writeVInt(block, buffer.size());
+            buffer.writeTo(block);
+        }
+        return block.toByteArray();
+    }
+
+    /**
+     * Returns the elements of next block, or null if reach the end
+     */
+    public List<GraphElement> decode(HugeType type, DataInputStream in)
+                                     throws IOException {
+        int count;
+        try {
+            count = readVInt(in);
+        } catch (EOFException e) {
+            return null;
+        }
+        List<GraphElement> elements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // The length is used to skip records by other readers
+            readVInt(in);
+            if (type == HugeType.VERTEX) {
+                elements.add(this.readVertex(in));
+            } else {
+                assert type == HugeType.EDGE;
+                elements.add(this.readEdge(in));
+            }
+        }
+        return elements;
+    }
+
+    private void writeVertex(DataOutputStream out, Vertex vertex)
+                             throws IOException {
+        this.writeLabel(out, vertex.label());
+        this.writeValue(out, vertex.id(), false);
+        this.writeProperties(out, vertex.properties());
+    }
+
+    private Vertex readVertex(DataInputStream in) throws IOException {
+        Vertex vertex = new Vertex(this.readLabel(in));
+        vertex.id(this.readValue(in));
+        this.readProperties(in, vertex);
+        return vertex;
+    }
+
+    private void writeEdge(DataOutputStream out, Edge edge)
+                           throws IOException {
+        this.writeLabel(out, edge.label());
+        this.writeValue(out, edge.id(), false);
+        this.writeLabel(out, edge.sourceLabel());
+        this.writeValue(out, edge.sourceId(), false);
+        this.writeLabel(out, edge.targetLabel());
+        this.writeValue(out, edge.targetId(), false);
+        this.writeProperties(out, edge.properties());
+    }
+
+    private Edge readEdge(DataInputStream in) throws IOException {
+        Edge edge = new Edge(this.readLabel(in));
+        Object id = this.readValue(in);
+        edge.id(id == null ? null : id.toString());
+        edge.sourceLabel(this.readLabel(in));
+        edge.sourceId(this.readValue(in));
+        edge.targetLabel(this.readLabel(in));
+        edge.targetId(this.readValue(in));
+        this.readProperties(in, edge);
+        return edge;
+    }
+
+    private void writeLabel(DataOutputStream out, String label)
+                            throws IOException {
+        this.writeName(out, this.dictionary.labelId(label), label);
+    }
+
+    private String readLabel(DataInputStream in) throws IOException {
+        int id = readVInt(in);
+        return id == 0 ? readString(in) : this.dictionary.label(id - 1);
+    }
+
+    private void writeProperties(DataOutputStream out,
+                                 Map<String, Object> properties)
+                                 throws IOException {
+        writeVInt(out, properties.size());
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            String key = property.getKey();
+            this.writeName(out, this.dictionary.propertyKeyId(key), key);
+            this.writeValue(out, property.getValue(),
+                            this.dictionary.isDate(key));
+        }
+    }
+
+    private void readProperties(DataInputStream in, GraphElement element)
+                                throws IOException {
+        int size = readVInt(in);
+        for (int i = 0; i < size; i++) {
+            int id = readVInt(in);
+            String key = id == 0 ? readString(in) :
+                         this.dictionary.propertyKey(id - 1);
+            element.property(key, this.readValue(in));
+        }
+    }
+
+    private void writeName(DataOutputStream out, int id, String name)
+                           throws IOException {
+        if (id == SchemaDictionary.ABSENT) {
+            writeVInt(out, 0);
+            writeString(out, name);
+        } else {
+            writeVInt(out, id + 1);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value, boolean date)
+                            throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short ||
+                   value instanceof Byte) {
+            out.writeByte(TAG_INT);
+            writeVLong(out, zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVLong(out, zigzag((Long) value));
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            Long time = date ? parseDate((String) value) : null;
+            if (time != null) {
+                out.writeByte(TAG_DATE);
+                writeVLong(out, zigzag(time));
+            } else {
+                out.writeByte(TAG_STRING);
+                writeString(out, (String) value);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVInt(out, values.size());
+            for (Object v : values) {
+                this.writeValue(out, v, date);
+            }
+        } else {
+            assert value instanceof BigInteger || value instanceof BigDecimal ||
+                   value instanceof Map : value.getClass();
+            // Keep the rare values such as big number or map as json
+            out.writeByte(TAG_JSON);
+            writeString(out, this.mapper.writeValueAsString(value));
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALSE:
+                return false;
+            case TAG_TRUE:
+                return true;
+            case TAG_INT:
+                return (int) unzigzag(readVLong(in));
+            case TAG_LONG:
+                return unzigzag(readVLong(in));
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING:
+                return readString(in);
+            case TAG_DATE:
+                Date date = new Date(unzigzag(readVLong(in)));
+                return DATE_FORMATS.get().format(date);
+            case TAG_LIST:
+                int size = readVInt(in);
+                List<Object> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(this.readValue(in));
+                }
+                return values;
+            case TAG_JSON:
+                return this.mapper.readValue(readString(in), Object.class);
+            default:
+                throw new IOException(String.format(
+                          "Invalid value tag %s in binary backup", tag));
+        }
+    }
+
+    /*
+     * Dates are kept as string by client, they are written as epoch only
+     * if they can be formatted back to the same string
+     */
+    private static Long parseDate(String value) {
+        if (value.length() != DATE_FORMAT.length()) {
+            return null;
+        }
+        SimpleDateFormat format = DATE_FORMATS.get();
+        try {
+            Date date = format.parse(value);
+            return value.equals(format.format(date)) ? date.getTime() : null;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value)
+                                    throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVInt(OutputStream out, int value)
+                                  throws IOException {
+        writeVLong(out, value & 0xffffffffL);
+    }
+
+    private static void writeVLong(OutputStream out, long value)
+                                   throws IOException {
+        while ((value & ~0x7fL) != 0L) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVInt(DataInputStream in) throws IOException {
+        return (int) readVLong(in);
+    }
+
+    private static long readVLong(DataInputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint in binary backup");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static DataInputStream dataInput(InputStream is) {
+        return new DataInputStream(new BufferedInputStream(is, BUFFER_SIZE));
+    }
+
+    /**
+     * Whether the file is in binary format, with or without compress suffix
+     */
+    public static boolean isBinary(String file) {
+        String suffix = CompressCodec.fromFile(file).suffix();
+        String name = file.substring(0, file.length() - suffix.length());
+        return name.endsWith(SUFFIX);
+    }
+}
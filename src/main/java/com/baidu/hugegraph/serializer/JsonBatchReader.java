@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.baidu.hugegraph.rest.SerializeException;
+import com.baidu.hugegraph.util.E;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Read the elements of json backup file in batches by the streaming parser,
+ * the file consists of objects like {"key": [element, ...]} one per line.
+ * Each element is bound from the tokens directly, no line or tree of the
+ * objects is built, and a batch may contain elements of adjacent lines.
+ */
+public class JsonBatchReader<T> implements Closeable {
+
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final String key;
+    private final int batchSize;
+    // Whether the parser is inside the array of elements
+    private boolean inArray;
+
+    public JsonBatchReader(ObjectMapper mapper, InputStream is, String key,
+                           Class<T> clazz, int batchSize) throws IOException {
+        E.checkArgument(batchSize > 0,
+                        "The batch size must be > 0, but got %s", batchSize);
+        this.parser = mapper.getFactory().createParser(is);
+        // The stream may be a range of file which is owned by the caller
+        this.parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.reader = mapper.readerFor(clazz);
+        this.key = key;
+        this.batchSize = batchSize;
+        this.inArray = false;
+    }
+
+    /**
+     * Returns the next batch of at most batchSize elements, or null if there
+     * is no more element
+     */
+    public List<T> next() throws IOException {
+        List<T> batch = new ArrayList<>(this.batchSize);
+        while (batch.size() < this.batchSize) {
+            if (!this.inArray && !this.seekArray()) {
+                break;
+            }
+            if (this.parser.nextToken() == JsonToken.END_ARRAY) {
+                this.inArray = false;
+                continue;
+            }
+            batch.add(this.reader.readValue(this.parser));
+        }
+        return batch.isEmpty() ? null : batch;
+    }
+
+    /*
+     * Move to the start of array of the next object, skip the other fields
+     */
+    private boolean seekArray() throws IOException {
+        JsonToken token;
+        while ((token = this.parser.nextToken()) != null) {
+            if (token == JsonToken.START_OBJECT ||
+                token == JsonToken.END_OBJECT) {
+                continue;
+            }
+            if (token != JsonToken.FIELD_NAME) {
+                throw new SerializeException("Invalid token %s at %s",
+                                             token,
+                                             this.parser.getTokenLocation());
+            }
+            String field = this.parser.getCurrentName();
+            token = this.parser.nextToken();
+            if (this.key.equals(field) && token == JsonToken.START_ARRAY) {
+                this.inArray = true;
+                return true;
+            }
+            this.parser.skipChildren();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.parser.close();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.baidu.hugegraph.base.Directory;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.constant.DataType;
+import com.baidu.hugegraph.structure.schema.EdgeLabel;
+import com.baidu.hugegraph.structure.schema.PropertyKey;
+import com.baidu.hugegraph.structure.schema.VertexLabel;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The names of labels and property keys of the backed-up schema, the binary
+ * backup refers to them with their index in the dictionary
+ */
+public class SchemaDictionary {
+
+    public static final String FILE = "dictionary";
+
+    public static final int ABSENT = -1;
+
+    @JsonProperty("vertex_labels")
+    private List<String> vertexLabels;
+    @JsonProperty("edge_labels")
+    private List<String> edgeLabels;
+    @JsonProperty("property_keys")
+    private List<String> propertyKeys;
+    @JsonProperty("date_property_keys")
+    private Set<String> dateKeys;
+
+    @JsonIgnore
+    private volatile Map<String, Integer> labelIds;
+    @JsonIgnore
+    private volatile Map<String, Integer> propertyKeyIds;
+
+    public SchemaDictionary() {
+        this.vertexLabels = new ArrayList<>();
+        this.edgeLabels = new ArrayList<>();
+        this.propertyKeys = new ArrayList<>();
+        this.dateKeys = new HashSet<>();
+    }
+
+    public SchemaDictionary(List<VertexLabel> vertexLabels,
+                            List<EdgeLabel> edgeLabels,
+                            List<PropertyKey> propertyKeys) {
+        this();
+        for (VertexLabel vertexLabel : vertexLabels) {
+            this.vertexLabels.add(vertexLabel.name());
+        }
+        for (EdgeLabel edgeLabel : edgeLabels) {
+            this.edgeLabels.add(edgeLabel.name());
+        }
+        for (PropertyKey propertyKey : propertyKeys) {
+            this.propertyKeys.add(propertyKey.name());
+            if (propertyKey.dataType() == DataType.DATE) {
+                this.dateKeys.add(propertyKey.name());
+            }
+        }
+    }
+
+    /**
+     * Vertex labels and edge labels share the id space, vertex labels first
+     */
+    public int labelId(String label) {
+        if (this.labelIds == null) {
+            Map<String, Integer> ids = new HashMap<>();
+            int id = 0;
+            for (String name : this.vertexLabels) {
+                ids.putIfAbsent(name, id++);
+            }
+            for (String name : this.edgeLabels) {
+                ids.putIfAbsent(name, id++);
+            }
+            this.labelIds = ids;
+        }
+        return this.labelIds.getOrDefault(label, ABSENT);
+    }
+
+    public String label(int id) {
+        if (id < this.vertexLabels.size()) {
+            return this.vertexLabels.get(id);
+        }
+        return this.edgeLabels.get(id - this.vertexLabels.size());
+    }
+
+    public int propertyKeyId(String propertyKey) {
+        if (this.propertyKeyIds == null) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < this.propertyKeys.size(); i++) {
+                ids.put(this.propertyKeys.get(i), i);
+            }
+            this.propertyKeyIds = ids;
+        }
+        return this.propertyKeyIds.getOrDefault(propertyKey, ABSENT);
+    }
+
+    public String propertyKey(int id) {
+        return this.propertyKeys.get(id);
+    }
+
+    public boolean isDate(String propertyKey) {
+        return this.dateKeys.contains(propertyKey);
+    }
+
+    public void save(Directory directory, ObjectMapper mapper) {
+        try (OutputStream os = directory.outputStream(FILE, false, true)) {
+            os.write(mapper.writeValueAsBytes(this));
+        } catch (IOException e) {
+            throw new ToolsException("Failed to write schema dictionary " +
+                                     "to '%s'", e, directory.directory());
+        }
+    }
+
+    public static SchemaDictionary load(Directory directory,
+                                        ObjectMapper mapper) {
+        try (InputStream is = directory.inputStream(FILE)) {
+            return mapper.readValue(is, SchemaDictionary.class);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to read schema dictionary " +
+                                     "from '%s'", e, directory.directory());
+        }
+    }
+}
@@ -19,25 +19,51 @@
 
 package com.baidu.hugegraph.structure;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-
-import org.eclipse.jetty.util.ConcurrentHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.baidu.hugegraph.structure.graph.Edge;
 import com.baidu.hugegraph.structure.graph.Vertex;
-import com.baidu.hugegraph.util.JsonUtil;
-import com.fasterxml.jackson.annotation.JsonRawValue;
-
+import com.baidu.hugegraph.util.E;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * The graph to dump, the edges are stored once in the columns of an edge
+ * store and the vertices refer to them by the adjacency in CSR(compressed
+ * sparse row) form, which is built from the edge store after loading.
+ */
 public class JsonGraph {
 
     private static final int INIT_VERTEX_CAPACITY = 1_000_000;
 
     private Map<String, Map<Object, JsonVertex>> tables;
+    private final int initVertexCapacity;
+    private final AtomicInteger vertexCount;
+    private final EdgeStore edges;
+    private volatile Adjacency adjacency;
 
     public JsonGraph() {
+        this(INIT_VERTEX_CAPACITY);
+    }
+
+    public JsonGraph(int initVertexCapacity) {
         this.tables = new ConcurrentHashMap<>();
+        this.initVertexCapacity = initVertexCapacity;
+        this.vertexCount = new AtomicInteger(0);
+        this.edges = new EdgeStore();
+        this.adjacency = null;
     }
 
     public Set<String> tables() {
@@ -47,7 +73,10 @@ public class JsonGraph {
     public void put(Vertex vertex) {
         // Add vertex to table of `label`
         Map<Object, JsonVertex> vertices = this.table(vertex.label());
-        vertices.put(vertex.id(), JsonVertex.from(vertex));
+        JsonVertex jsonVertex = JsonVertex.from(vertex);
+        jsonVertex.graph = this;
+        jsonVertex.index = this.vertexCount.getAndIncrement();
+        vertices.put(vertex.id(), jsonVertex);
     }
 
     public void put(Edge edge) {
@@ -70,32 +99,102 @@ public class JsonGraph {
         }
 
         // Add edge to source&target vertex
-        JsonEdge jsonEdge = JsonEdge.from(edge);
-        source.addEdge(jsonEdge);
-        target.addEdge(jsonEdge);
+        this.edges.add(edge, source.id, source.index, target.id, target.index);
+    }
+
+    /**
+     * Add the edge to its source and target vertex in this graph, the one
+     * not in this graph is ignored, which is used by a partition of graph
+     * whose edges have been checked
+     */
+    public void attach(Edge edge) {
+        JsonVertex source = this.table(edge.sourceLabel())
+                                .get(edge.sourceId());
+        JsonVertex target = this.table(edge.targetLabel())
+                                .get(edge.targetId());
+        if (source != null && target != null) {
+            this.edges.add(edge, source.id, source.index,
+                           target.id, target.index);
+        } else if (source != null) {
+            this.edges.add(edge, source.id, source.index,
+                           edge.targetId(), -1);
+        } else if (target != null) {
+            this.edges.add(edge, edge.sourceId(), -1,
+                           target.id, target.index);
+        }
     }
 
     public Map<Object, JsonVertex> table(String table) {
         Map<Object, JsonVertex> vertices = this.tables.get(table);
         if (vertices == null) {
-            vertices = new ConcurrentHashMap<>(INIT_VERTEX_CAPACITY);
+            vertices = new ConcurrentHashMap<>(this.initVertexCapacity);
             this.tables.putIfAbsent(table, vertices);
         }
         return this.tables.get(table);
     }
 
+    /*
+     * The edges of the vertex, the adjacency is built on the first call
+     * after loading and rebuilt if more elements are added after that
+     */
+    private List<JsonEdge> edges(int vertex) {
+        Adjacency adjacency = this.adjacency;
+        if (this.stale(adjacency, vertex)) {
+            synchronized (this.edges) {
+                adjacency = this.adjacency;
+                if (this.stale(adjacency, vertex)) {
+                    adjacency = new Adjacency(this.edges,
+                                              this.vertexCount.get());
+                    this.adjacency = adjacency;
+                }
+            }
+        }
+        int start = adjacency.offsets[vertex];
+        int end = adjacency.offsets[vertex + 1];
+        int[] indexes = adjacency.indexes;
+        EdgeStore edges = this.edges;
+        return new AbstractList<JsonEdge>() {
+
+            @Override
+            public JsonEdge get(int index) {
+                return edges.get(indexes[start + index]);
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+
+    private boolean stale(Adjacency adjacency, int vertex) {
+        return adjacency == null || adjacency.edges != this.edges.size() ||
+               vertex >= adjacency.offsets.length - 1;
+    }
+
     public static class JsonVertex {
 
         private Object id;
         private String label;
-        private String properties;
-        private Set<JsonEdge> edges;
+        private JsonProperties properties;
+        // The edges of the vertex not in a graph, like a merged one
+        private List<JsonEdge> edges;
+        // The graph which holds the edges of the vertex and its index
+        private JsonGraph graph;
+        private int index;
 
         public JsonVertex() {
-            this.edges = new ConcurrentHashSet<>();
+            this.edges = null;
+            this.graph = null;
+            this.index = -1;
         }
 
         public void addEdge(JsonEdge edge) {
+            E.checkState(this.graph == null,
+                         "Can't add edge to the vertex of graph");
+            if (this.edges == null) {
+                this.edges = new ArrayList<>();
+            }
             this.edges.add(edge);
         }
 
@@ -107,25 +206,30 @@ public class JsonGraph {
             return this.label;
         }
 
-        @JsonRawValue
-        public String getProperties() {
+        public JsonProperties getProperties() {
             return this.properties;
         }
 
-        public Set<JsonEdge> getEdges() {
-            return this.edges;
+        public List<JsonEdge> getEdges() {
+            if (this.graph != null) {
+                return this.graph.edges(this.index);
+            }
+            return this.edges != null ? this.edges : Collections.emptyList();
         }
 
-        @SuppressWarnings("unchecked")
         public Map<String, Object> properties() {
-            return JsonUtil.fromJson(this.properties, Map.class);
+            return this.properties.asMap();
+        }
+
+        public Object property(String key) {
+            return this.properties.get(key);
         }
 
         public static JsonVertex from(Vertex v) {
             JsonVertex vertex = new JsonVertex();
             vertex.id = v.id();
             vertex.label = v.label();
-            vertex.properties = JsonUtil.toJson(v.properties());
+            vertex.properties = JsonProperties.from(v.properties());
             return vertex;
         }
     }
@@ -136,7 +240,7 @@ public class JsonGraph {
         private String label;
         private Object source;
         private Object target;
-        private String properties;
+        private JsonProperties properties;
 
         public String getId() {
             return this.id;
@@ -154,14 +258,16 @@ public class JsonGraph {
             return this.target;
         }
 
-        @JsonRawValue
-        public String getProperties() {
+        public JsonProperties getProperties() {
             return this.properties;
         }
 
-        @SuppressWarnings("unchecked")
         public Map<String, Object> properties() {
-            return JsonUtil.fromJson(this.properties, Map.class);
+            return this.properties.asMap();
+        }
+
+        public Object property(String key) {
+            return this.properties.get(key);
         }
 
         public static JsonEdge from(Edge e) {
@@ -170,8 +276,298 @@ public class JsonGraph {
             edge.label = e.label();
             edge.source = e.sourceId();
             edge.target = e.targetId();
-            edge.properties = JsonUtil.toJson(e.properties());
+            edge.properties = JsonProperties.from(e.properties());
             return edge;
         }
     }
+
+    /**
+     * The properties of vertex or edge kept as the values parsed by client
+     * in parallel arrays of keys and values, which are read by formatters
+     * without json round trip and serialized as json object directly. The
+     * arrays of keys are shared by the elements with the same property keys,
+     * which are few as they are defined by schema.
+     */
+    @JsonSerialize(using = JsonProperties.Serializer.class)
+    public static class JsonProperties {
+
+        private static final int MAX_SHARED_KEYS = 10000;
+        private static final Map<List<String>, String[]> SHARED_KEYS =
+                             new ConcurrentHashMap<>();
+        private static final JsonProperties EMPTY =
+                             new JsonProperties(new String[0], new Object[0]);
+
+        private final String[] keys;
+        private final Object[] values;
+
+        private JsonProperties(String[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        public int size() {
+            return this.keys.length;
+        }
+
+        public Object get(String key) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i].equals(key)) {
+                    return this.values[i];
+                }
+            }
+            return null;
+        }
+
+        public Map<String, Object> asMap() {
+            Map<String, Object> map = new LinkedHashMap<>(this.keys.length);
+            for (int i = 0; i < this.keys.length; i++) {
+                map.put(this.keys[i], this.values[i]);
+            }
+            return map;
+        }
+
+        public static JsonProperties from(Map<String, Object> properties) {
+            if (properties.isEmpty()) {
+                return EMPTY;
+            }
+            String[] keys = new String[properties.size()];
+            Object[] values = new Object[properties.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> e : properties.entrySet()) {
+                keys[i] = e.getKey();
+                values[i++] = e.getValue();
+            }
+            return new JsonProperties(sharedKeys(keys), values);
+        }
+
+        private static String[] sharedKeys(String[] keys) {
+            String[] shared = SHARED_KEYS.get(Arrays.asList(keys));
+            if (shared != null) {
+                return shared;
+            }
+            if (SHARED_KEYS.size() < MAX_SHARED_KEYS) {
+                shared = SHARED_KEYS.putIfAbsent(Arrays.asList(keys), keys);
+            }
+            return shared != null ? shared : keys;
+        }
+
+        public static class Serializer extends StdSerializer<JsonProperties> {
+
+            public Serializer() {
+                super(JsonProperties.class);
+            }
+
+            @Override
+            public void serialize(JsonProperties properties,
+                                  JsonGenerator generator,
+                                  SerializerProvider provider)
+                                  throws IOException {
+                generator.writeStartObject();
+                for (int i = 0; i < properties.keys.length; i++) {
+                    provider.defaultSerializeField(properties.keys[i],
+                                                   properties.values[i],
+                                                   generator);
+                }
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    /**
+     * The append-only columns of edges, which are striped by the adding
+     * thread to avoid a global lock, and chunked to grow without copying.
+     * The stripe of an edge is held in the low bits of its index. The label
+     * strings and the property keys are shared, the vertex ids are shared
+     * with the vertices in the graph, and each edge holds the indexes of its
+     * source and target vertex, -1 means not in the graph.
+     */
+    private static class EdgeStore {
+
+        private static final int STRIPE_BITS = 4;
+        private static final int STRIPES = 1 << STRIPE_BITS;
+        private static final int STRIPE_MASK = STRIPES - 1;
+        // Keep the index with stripe bits a non-negative int
+        private static final int MAX_STRIPE_SIZE = Integer.MAX_VALUE >>>
+                                                   STRIPE_BITS;
+
+        private final Stripe[] stripes;
+        private final Map<String, String> labels;
+
+        public EdgeStore() {
+            this.stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                this.stripes[i] = new Stripe();
+            }
+            this.labels = new ConcurrentHashMap<>();
+        }
+
+        public int size() {
+            int size = 0;
+            for (Stripe stripe : this.stripes) {
+                size += stripe.size;
+            }
+            return size;
+        }
+
+        public void add(Edge edge, Object source, int sourceIndex,
+                        Object target, int targetIndex) {
+            String label = this.labels.computeIfAbsent(edge.label(),
+                                                       l -> l);
+            JsonProperties properties = JsonProperties.from(
+                                        edge.properties());
+            int i = (int) (Thread.currentThread().getId() & STRIPE_MASK);
+            this.stripes[i].add(edge.id(), label, source, target,
+                                properties, sourceIndex, targetIndex);
+        }
+
+        public JsonEdge get(int index) {
+            return this.stripes[index & STRIPE_MASK].get(index >>>
+                                                         STRIPE_BITS);
+        }
+
+        public int sourceIndex(int index) {
+            return this.stripes[index & STRIPE_MASK].sourceIndex(
+                   index >>> STRIPE_BITS);
+        }
+
+        public int targetIndex(int index) {
+            return this.stripes[index & STRIPE_MASK].targetIndex(
+                   index >>> STRIPE_BITS);
+        }
+    }
+
+    /**
+     * The columns of edges added by the threads of a stripe, the edges
+     * added before the volatile size are visible to the readers
+     */
+    private static class Stripe {
+
+        private static final int CHUNK_BITS = 14;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private volatile Chunk[] chunks;
+        private volatile int size;
+
+        public Stripe() {
+            this.chunks = new Chunk[0];
+            this.size = 0;
+        }
+
+        public synchronized void add(String id, String label, Object source,
+                                     Object target, JsonProperties properties,
+                                     int sourceIndex, int targetIndex) {
+            int index = this.size;
+            E.checkState(index < EdgeStore.MAX_STRIPE_SIZE,
+                         "Too many edges in the graph to dump");
+            Chunk[] chunks = this.chunks;
+            if ((index & CHUNK_MASK) == 0) {
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = new Chunk();
+                this.chunks = chunks;
+            }
+            Chunk chunk = chunks[index >>> CHUNK_BITS];
+            int i = index & CHUNK_MASK;
+            chunk.ids[i] = id;
+            chunk.labels[i] = label;
+            chunk.sources[i] = source;
+            chunk.targets[i] = target;
+            chunk.propertyKeys[i] = properties.keys;
+            chunk.propertyValues[i] = properties.values;
+            chunk.sourceIndexes[i] = sourceIndex;
+            chunk.targetIndexes[i] = targetIndex;
+            this.size = index + 1;
+        }
+
+        public JsonEdge get(int index) {
+            Chunk chunk = this.chunks[index >>> CHUNK_BITS];
+            int i = index & CHUNK_MASK;
+            JsonEdge edge = new JsonEdge();
+            edge.id = chunk.ids[i];
+            edge.label = chunk.labels[i];
+            edge.source = chunk.sources[i];
+            edge.target = chunk.targets[i];
+            edge.properties = new JsonProperties(chunk.propertyKeys[i],
+                                                 chunk.propertyValues[i]);
+            return edge;
+        }
+
+        public int sourceIndex(int index) {
+            return this.chunks[index >>> CHUNK_BITS]
+                       .sourceIndexes[index & CHUNK_MASK];
+        }
+
+        public int targetIndex(int index) {
+            return this.chunks[index >>> CHUNK_BITS]
+                       .targetIndexes[index & CHUNK_MASK];
+        }
+
+        private static class Chunk {
+
+            private final String[] ids = new String[CHUNK_SIZE];
+            private final String[] labels = new String[CHUNK_SIZE];
+            private final Object[] sources = new Object[CHUNK_SIZE];
+            private final Object[] targets = new Object[CHUNK_SIZE];
+            private final String[][] propertyKeys = new String[CHUNK_SIZE][];
+            private final Object[][] propertyValues = new Object[CHUNK_SIZE][];
+            private final int[] sourceIndexes = new int[CHUNK_SIZE];
+            private final int[] targetIndexes = new int[CHUNK_SIZE];
+        }
+    }
+
+    /**
+     * The edge indexes of each vertex in CSR form, the ones of vertex i are
+     * indexes[offsets[i]] until indexes[offsets[i + 1]], a self-loop edge is
+     * held once
+     */
+    private static class Adjacency {
+
+        private final int edges;
+        private final int[] offsets;
+        private final int[] indexes;
+
+        // The edges added while building are left to the next build
+        public Adjacency(EdgeStore store, int vertices) {
+            int[] sizes = new int[EdgeStore.STRIPES];
+            int edges = 0;
+            for (int s = 0; s < EdgeStore.STRIPES; s++) {
+                sizes[s] = store.stripes[s].size;
+                edges += sizes[s];
+            }
+            this.edges = edges;
+            this.offsets = new int[vertices + 1];
+            for (int s = 0; s < EdgeStore.STRIPES; s++) {
+                Stripe stripe = store.stripes[s];
+                for (int e = 0; e < sizes[s]; e++) {
+                    int source = stripe.sourceIndex(e);
+                    int target = stripe.targetIndex(e);
+                    if (source >= 0) {
+                        this.offsets[source + 1]++;
+                    }
+                    if (target >= 0 && target != source) {
+                        this.offsets[target + 1]++;
+                    }
+                }
+            }
+            for (int v = 0; v < vertices; v++) {
+                this.offsets[v + 1] += this.offsets[v];
+            }
+            this.indexes = new int[this.offsets[vertices]];
+            int[] positions = Arrays.copyOf(this.offsets, vertices);
+            for (int s = 0; s < EdgeStore.STRIPES; s++) {
+                Stripe stripe = store.stripes[s];
+                for (int e = 0; e < sizes[s]; e++) {
+                    int source = stripe.sourceIndex(e);
+                    int target = stripe.targetIndex(e);
+                    int index = e << EdgeStore.STRIPE_BITS | s;
+                    if (source >= 0) {
+                        this.indexes[positions[source]++] = index;
+                    }
+                    if (target >= 0 && target != source) {
+                        this.indexes[positions[target]++] = index;
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.structure;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.FileUtils;
+
+import com.baidu.hugegraph.base.CompressCodec;
+import com.baidu.hugegraph.base.Printer;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.JsonGraph.JsonEdge;
+import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.util.E;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The graph to dump which is spilled to local files as compressed runs of
+ * records sorted by vertex id, and the vertices are joined with their edges
+ * by the k-way merge of runs, so the memory is bounded by the size of a run
+ * and the files are read and written sequentially.
+ *
+ * Like JsonGraph, the edge whose source or target vertex doesn't exist is
+ * ignored. The edges keyed by source are merged with the vertices first,
+ * the ones with source are keyed by target and merged again, then the ones
+ * with both are merged with the vertices by source and by target at last.
+ */
+public class SortedJsonGraph {
+
+    // The vertex is sorted before the edges of the same id
+    private static final int VERTEX = 0;
+    private static final int EDGE = 1;
+
+    // The ratio of the heap occupied by the records to the bytes of them
+    private static final int MEMORY_EXPANSION = 3;
+    // A run is being filled while the previous one is being spilled
+    private static final int RUN_BUFFERS = 2;
+    private static final int MAX_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final CompressCodec CODEC = CompressCodec.LZ4;
+
+    private final File directory;
+    private final ObjectMapper mapper;
+    private final long runSize;
+    private final Sorter sorter;
+    private int nextRun;
+
+    public SortedJsonGraph(File directory, ObjectMapper mapper,
+                           long memoryBudget) {
+        E.checkArgument(memoryBudget > 0L,
+                        "The memory budget must be > 0, but got %s",
+                        memoryBudget);
+        try {
+            if (directory.exists()) {
+                FileUtils.forceDelete(directory);
+            }
+            FileUtils.forceMkdir(directory);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to create spill directory '%s'",
+                                     e, directory);
+        }
+        this.directory = directory;
+        this.mapper = mapper;
+        this.runSize = memoryBudget / MEMORY_EXPANSION / RUN_BUFFERS;
+        this.sorter = new Sorter();
+        this.nextRun = 0;
+    }
+
+    public void put(Vertex vertex) {
+        this.sorter.add(new Record(this.key(vertex.id()), VERTEX,
+                                   this.toJson(vertex)));
+    }
+
+    public void put(Edge edge) {
+        this.sorter.add(new Record(this.key(edge.sourceId()), EDGE,
+                                   this.toJson(edge)));
+    }
+
+    /**
+     * Merge the vertices with their edges, each vertex with the edges is
+     * passed to the consumer in the order of vertex id
+     */
+    public void join(Consumer<JsonVertex> consumer) {
+        // Keep the vertices and the edges with source, keyed by target
+        File vertices = this.newRun();
+        Sorter byTarget = new Sorter();
+        List<File> runs = this.sorter.finish();
+        try (RunWriter writer = new RunWriter(vertices)) {
+            this.merge(runs, (vertex, edges) -> {
+                writer.write(vertex);
+                for (Record record : edges) {
+                    Edge edge = this.fromJson(record.value, Edge.class);
+                    byTarget.add(new Record(this.key(edge.targetId()), EDGE,
+                                            record.value));
+                }
+            });
+        }
+        deleteRuns(runs);
+
+        // Keep the edges with target, and key them by source once again
+        File inEdges = this.newRun();
+        Sorter bySource = new Sorter();
+        runs = byTarget.finish();
+        runs.add(vertices);
+        try (RunWriter writer = new RunWriter(inEdges)) {
+            this.merge(runs, (vertex, edges) -> {
+                for (Record record : edges) {
+                    writer.write(record);
+                    Edge edge = this.fromJson(record.value, Edge.class);
+                    String source = this.key(edge.sourceId());
+                    // The self-loop edge has been kept by target
+                    if (!source.equals(record.key)) {
+                        bySource.add(new Record(source, EDGE, record.value));
+                    }
+                }
+            });
+        }
+        // The vertices are merged once again at last
+        runs.remove(vertices);
+        deleteRuns(runs);
+
+        runs = bySource.finish();
+        runs.add(vertices);
+        runs.add(inEdges);
+        this.merge(runs, (vertex, edges) -> {
+            JsonVertex jsonVertex = JsonVertex.from(
+                                    this.fromJson(vertex.value, Vertex.class));
+            for (Record record : edges) {
+                jsonVertex.addEdge(JsonEdge.from(
+                                   this.fromJson(record.value, Edge.class)));
+            }
+            consumer.accept(jsonVertex);
+        });
+        deleteRuns(runs);
+    }
+
+    public void close() {
+        try {
+            FileUtils.deleteDirectory(this.directory);
+        } catch (IOException e) {
+            Printer.print("Failed to delete spill directory '%s': %s",
+                          this.directory, e.getMessage());
+        }
+    }
+
+    /*
+     * Merge the runs and pass the vertex of each id with the edges of the
+     * same id to the consumer, the edges without vertex are dropped
+     */
+    private void merge(List<File> runs, GroupConsumer consumer) {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Math.max(1, runs.size()),
+                Comparator.comparing(reader -> reader.current,
+                                     Record.COMPARATOR));
+        try {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            Record vertex = null;
+            List<Record> edges = new ArrayList<>();
+            String key = null;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                Record record = reader.current;
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+                if (!record.key.equals(key)) {
+                    if (vertex != null) {
+                        consumer.accept(vertex, edges);
+                    }
+                    key = record.key;
+                    vertex = null;
+                    edges = new ArrayList<>();
+                }
+                if (record.type == VERTEX) {
+                    // The duplicate vertex is ignored
+                    if (vertex == null) {
+                        vertex = record;
+                    }
+                } else if (vertex != null) {
+                    edges.add(record);
+                }
+            }
+            if (vertex != null) {
+                consumer.accept(vertex, edges);
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    private synchronized File newRun() {
+        return new File(this.directory, "run_" + this.nextRun++);
+    }
+
+    private String key(Object id) {
+        // The id may be number or string, which are different vertices
+        return this.toJson(id);
+    }
+
+    private String toJson(Object object) {
+        try {
+            return this.mapper.writeValueAsString(object);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to serialize %s", e, object);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> clazz) {
+        try {
+            return this.mapper.readValue(json, clazz);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to deserialize %s", e, json);
+        }
+    }
+
+    @FunctionalInterface
+    private interface GroupConsumer {
+
+        void accept(Record vertex, List<Record> edges);
+    }
+
+    private static class Record {
+
+        private static final Comparator<Record> COMPARATOR =
+                Comparator.<Record, String>comparing(record -> record.key)
+                          .thenComparingInt(record -> record.type);
+
+        // The json of vertex id without tab or line break
+        private final String key;
+        private final int type;
+        private final String value;
+
+        public Record(String key, int type, String value) {
+            this.key = key;
+            this.type = type;
+            this.value = value;
+        }
+
+        public long size() {
+            return this.key.length() + this.value.length() + 2L;
+        }
+
+        public String toLine() {
+            return this.key + '\t' + this.type + '\t' + this.value;
+        }
+
+        public static Record fromLine(String line) {
+            int first = line.indexOf('\t');
+            int second = line.indexOf('\t', first + 1);
+            return new Record(line.substring(0, first),
+                              Integer.parseInt(line.substring(first + 1,
+                                                              second)),
+                              line.substring(second + 1));
+        }
+    }
+
+    /**
+     * Sort the records added concurrently into runs, each run holds the
+     * records up to the size of run. The full run is swapped out under the
+     * lock and sorted and written by the thread filling it up, while the
+     * others keep adding records to the next run.
+     */
+    private class Sorter {
+
+        private List<Record> records = new ArrayList<>();
+        private long size = 0L;
+        private boolean spilling = false;
+        private final List<File> runs = new ArrayList<>();
+
+        public void add(Record record) {
+            List<Record> full;
+            synchronized (this) {
+                this.records.add(record);
+                this.size += record.size();
+                // Wait if the previous run is still being spilled
+                while (this.spilling &&
+                       this.size >= SortedJsonGraph.this.runSize) {
+                    this.await();
+                }
+                if (this.size < SortedJsonGraph.this.runSize) {
+                    return;
+                }
+                full = this.swap();
+            }
+            this.spill(full);
+        }
+
+        /**
+         * Returns the runs to merge, which are merged into fewer ones first
+         * if there are too many to be opened at the same time
+         */
+        public synchronized List<File> finish() {
+            while (this.spilling) {
+                this.await();
+            }
+            if (!this.records.isEmpty()) {
+                this.spill(this.swap());
+            }
+            List<File> runs = new ArrayList<>(this.runs);
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<File> group = runs.subList(
+                                       i, Math.min(i + MAX_FAN_IN,
+                                                   runs.size()));
+                    merged.add(this.mergeRuns(new ArrayList<>(group)));
+                }
+                runs = merged;
+            }
+            this.runs.clear();
+            return runs;
+        }
+
+        private List<Record> swap() {
+            assert Thread.holdsLock(this);
+            List<Record> full = this.records;
+            this.records = new ArrayList<>();
+            this.size = 0L;
+            this.spilling = true;
+            return full;
+        }
+
+        private void await() {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                throw new ToolsException("Interrupted while waiting for " +
+                                         "spilling run", e);
+            }
+        }
+
+        private void spill(List<Record> records) {
+            File run = SortedJsonGraph.this.newRun();
+            boolean written = false;
+            try {
+                records.sort(Record.COMPARATOR);
+                try (RunWriter writer = new RunWriter(run)) {
+                    for (Record record : records) {
+                        writer.write(record);
+                    }
+                }
+                written = true;
+            } finally {
+                synchronized (this) {
+                    if (written) {
+                        this.runs.add(run);
+                    }
+                    this.spilling = false;
+                    this.notifyAll();
+                }
+            }
+        }
+
+        private File mergeRuns(List<File> runs) {
+            File run = SortedJsonGraph.this.newRun();
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    runs.size(), Comparator.comparing(reader -> reader.current,
+                                                      Record.COMPARATOR));
+            try (RunWriter writer = new RunWriter(run)) {
+                for (File file : runs) {
+                    RunReader reader = new RunReader(file);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                while (!queue.isEmpty()) {
+                    RunReader reader = queue.poll();
+                    writer.write(reader.current);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+            } finally {
+                for (RunReader reader : queue) {
+                    reader.close();
+                }
+                for (File file : runs) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+            return run;
+        }
+    }
+
+    private static class RunWriter implements Closeable {
+
+        private final File file;
+        private final BufferedWriter writer;
+
+        public RunWriter(File file) {
+            this.file = file;
+            OutputStream os = null;
+            try {
+                os = new FileOutputStream(file);
+                this.writer = new BufferedWriter(new OutputStreamWriter(
+                              CODEC.compress(os, file.getName(),
+                                             CompressCodec.DEFAULT_LEVEL),
+                              StandardCharsets.UTF_8), BUFFER_SIZE);
+            } catch (IOException e) {
+                closeQuietly(os);
+                throw new ToolsException("Failed to open spill file '%s'",
+                                         e, file);
+            }
+        }
+
+        public void write(Record record) {
+            try {
+                this.writer.write(record.toLine());
+                this.writer.write('\n');
+            } catch (IOException e) {
+                throw new ToolsException("Failed to write spill file '%s'",
+                                         e, this.file);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.writer.close();
+            } catch (IOException e) {
+                throw new ToolsException("Failed to close spill file '%s'",
+                                         e, this.file);
+            }
+        }
+    }
+
+    private static class RunReader implements Closeable {
+
+        private final File file;
+        private final BufferedReader reader;
+        private Record current;
+
+        public RunReader(File file) {
+            this.file = file;
+            InputStream is = null;
+            try {
+                is = new FileInputStream(file);
+                this.reader = new BufferedReader(new InputStreamReader(
+                              CODEC.decompress(is, file.getName()),
+                              StandardCharsets.UTF_8), BUFFER_SIZE);
+            } catch (IOException e) {
+                closeQuietly(is);
+                throw new ToolsException("Failed to open spill file '%s'",
+                                         e, file);
+            }
+        }
+
+        public boolean next() {
+            String line;
+            try {
+                line = this.reader.readLine();
+            } catch (IOException e) {
+                throw new ToolsException("Failed to read spill file '%s'",
+                                         e, this.file);
+            }
+            this.current = line == null ? null : Record.fromLine(line);
+            return this.current != null;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(this.reader);
+        }
+    }
+
+    private static void deleteRuns(List<File> runs) {
+        for (File run : runs) {
+            FileUtils.deleteQuietly(run);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing to do
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.structure;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+
+import com.baidu.hugegraph.api.API;
+import com.baidu.hugegraph.base.Printer;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.util.E;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
+/**
+ * The graph to dump which is partitioned by the hash of vertex id and
+ * spilled to local files, so that only one partition is held in memory
+ * when joining the vertices with their edges.
+ *
+ * Like JsonGraph, the edge whose source or target vertex doesn't exist is
+ * ignored. The edges are checked against the ids of vertices partition by
+ * partition twice, first by the partition of source and then by the one of
+ * target, before they are joined with the vertices of both partitions.
+ *
+ * The number of partitions is derived from the memory budget, so that the
+ * buffers of the spill files take at most half of it. The ids and the
+ * partitions over budget are read in rounds or split again.
+ */
+public class SpilledJsonGraph {
+
+    private static final int MIN_PARTITIONS = 4;
+    // Keep the number of open files reasonable
+    private static final int MAX_PARTITIONS = 256;
+    // The vertices, vertex ids and edges are spilled at the same time
+    private static final int OPEN_SPILLS = 3;
+    // The ratio of the heap occupied by the objects to the bytes spilled
+    private static final int MEMORY_EXPANSION = 4;
+    // The seed of hash to read the ids in rounds, differs from any depth
+    private static final int ROUND_SEED = 0x5eed;
+    // The partition over budget is split again by another hash at most
+    private static final int MAX_DEPTH = 3;
+    private static final int INIT_VERTEX_CAPACITY = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final ObjectMapper mapper;
+    private final long memoryBudget;
+    private final int partitions;
+    private final Spill vertices;
+    private final Spill vertexIds;
+    private final Spill edges;
+
+    public SpilledJsonGraph(File directory, ObjectMapper mapper,
+                            long memoryBudget) {
+        E.checkArgument(memoryBudget > 0L,
+                        "The memory budget must be > 0, but got %s",
+                        memoryBudget);
+        try {
+            if (directory.exists()) {
+                FileUtils.forceDelete(directory);
+            }
+            FileUtils.forceMkdir(directory);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to create spill directory '%s'",
+                                     e, directory);
+        }
+        this.directory = directory;
+        this.mapper = mapper;
+        this.memoryBudget = memoryBudget;
+        long partitions = memoryBudget / 2 / (OPEN_SPILLS * BUFFER_SIZE);
+        this.partitions = (int) Math.max(MIN_PARTITIONS,
+                                         Math.min(MAX_PARTITIONS, partitions));
+        this.vertices = this.spill(directory, "vertex");
+        this.vertexIds = this.spill(directory, "vertex_id");
+        this.edges = this.spill(directory, "edge_source");
+    }
+
+    public int partitions() {
+        return this.partitions;
+    }
+
+    public void put(Vertex vertex) {
+        int partition = this.partition(vertex.id());
+        this.vertices.write(partition, this.toJson(vertex));
+        this.vertexIds.write(partition, this.toJson(vertex.id()));
+    }
+
+    public void put(Edge edge) {
+        this.edges.write(this.partition(edge.sourceId()), this.toJson(edge));
+    }
+
+    /**
+     * Join the vertices with their edges partition by partition, the graph
+     * of each partition is passed to the consumer and dropped after that
+     */
+    public void join(Consumer<JsonGraph> consumer) {
+        this.vertices.close();
+        this.vertexIds.close();
+        this.edges.close();
+
+        // Keep the edges with source vertex, by the partition of target
+        Spill byTarget = this.spill(this.directory, "edge_target");
+        for (int i = 0; i < this.partitions; i++) {
+            this.filter(i, this.edges.file(i), Edge::sourceId,
+                        (edge, line) -> {
+                byTarget.write(this.partition(edge.targetId()), line);
+            });
+        }
+        byTarget.close();
+        this.edges.delete();
+
+        // Keep the edges with target vertex, by the partitions of both
+        Spill valid = this.spill(this.directory, "edge");
+        for (int i = 0; i < this.partitions; i++) {
+            int partition = i;
+            this.filter(i, byTarget.file(i), Edge::targetId,
+                        (edge, line) -> {
+                valid.write(partition, line);
+                int source = this.partition(edge.sourceId());
+                if (source != partition) {
+                    valid.write(source, line);
+                }
+            });
+        }
+        valid.close();
+        byTarget.delete();
+        this.vertexIds.delete();
+
+        for (int i = 0; i < this.partitions; i++) {
+            this.join(this.vertices.file(i), valid.file(i), 1, consumer);
+        }
+        this.vertices.delete();
+        valid.delete();
+    }
+
+    public void close() {
+        this.vertices.close();
+        this.vertexIds.close();
+        this.edges.close();
+        try {
+            FileUtils.deleteDirectory(this.directory);
+        } catch (IOException e) {
+            Printer.print("Failed to delete spill directory '%s': %s",
+                          this.directory, e.getMessage());
+        }
+    }
+
+    private void join(File vertexFile, File edgeFile, int depth,
+                      Consumer<JsonGraph> consumer) {
+        if (!vertexFile.exists()) {
+            // No vertex to join with the edges
+            return;
+        }
+        long estimated = (vertexFile.length() + edgeFile.length()) *
+                         MEMORY_EXPANSION;
+        if (estimated > this.memoryBudget && depth <= MAX_DEPTH) {
+            // Split into twice the partitions expected to fit in budget
+            long expected = estimated / this.memoryBudget + 1;
+            int partitions = (int) Math.min(this.partitions, expected * 2);
+            this.splitAndJoin(vertexFile, edgeFile, depth, partitions,
+                              consumer);
+            return;
+        }
+        JsonGraph graph = new JsonGraph(INIT_VERTEX_CAPACITY);
+        this.read(vertexFile, line -> {
+            graph.put(this.fromJson(line, Vertex.class));
+        });
+        this.read(edgeFile, line -> {
+            graph.attach(this.fromJson(line, Edge.class));
+        });
+        consumer.accept(graph);
+    }
+
+    private void splitAndJoin(File vertexFile, File edgeFile, int depth,
+                              int partitions, Consumer<JsonGraph> consumer) {
+        File subDirectory = new File(this.directory, vertexFile.getName() +
+                                                     "_" + depth);
+        Spill subVertices = new Spill(subDirectory, "vertex", partitions);
+        Spill subEdges = new Spill(subDirectory, "edge", partitions);
+        try {
+            this.read(vertexFile, line -> {
+                Vertex vertex = this.fromJson(line, Vertex.class);
+                subVertices.write(partition(vertex.id(), depth, partitions),
+                                  line);
+            });
+            this.read(edgeFile, line -> {
+                Edge edge = this.fromJson(line, Edge.class);
+                int source = partition(edge.sourceId(), depth, partitions);
+                int target = partition(edge.targetId(), depth, partitions);
+                subEdges.write(source, line);
+                if (target != source) {
+                    subEdges.write(target, line);
+                }
+            });
+            subVertices.close();
+            subEdges.close();
+            for (int i = 0; i < partitions; i++) {
+                this.join(subVertices.file(i), subEdges.file(i),
+                          depth + 1, consumer);
+            }
+        } finally {
+            subVertices.close();
+            subEdges.close();
+            try {
+                FileUtils.deleteDirectory(subDirectory);
+            } catch (IOException ignored) {
+                // Deleted with the spill directory at last
+            }
+        }
+    }
+
+    /*
+     * Pass the edges of the file whose vertex exists in the ids of the
+     * partition to the consumer. The ids over budget are read in rounds by
+     * another hash, and the edges are scanned once per round.
+     */
+    private void filter(int partition, File edgeFile,
+                        Function<Edge, Object> vertex,
+                        BiConsumer<Edge, String> consumer) {
+        if (!edgeFile.exists()) {
+            return;
+        }
+        File idFile = this.vertexIds.file(partition);
+        long estimated = idFile.length() * MEMORY_EXPANSION;
+        int rounds = (int) Math.min(Integer.MAX_VALUE,
+                                    estimated / this.memoryBudget + 1);
+        for (int i = 0; i < rounds; i++) {
+            int round = i;
+            Set<Object> ids = this.readIds(idFile, rounds, round);
+            this.read(edgeFile, line -> {
+                Edge edge = this.fromJson(line, Edge.class);
+                Object id = vertex.apply(edge);
+                if ((rounds == 1 ||
+                     partition(id, ROUND_SEED, rounds) == round) &&
+                    ids.contains(id)) {
+                    consumer.accept(edge, line);
+                }
+            });
+        }
+    }
+
+    private Set<Object> readIds(File idFile, int rounds, int round) {
+        Set<Object> ids = new HashSet<>();
+        this.read(idFile, line -> {
+            Object id = this.fromJson(line, Object.class);
+            if (rounds == 1 || partition(id, ROUND_SEED, rounds) == round) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private void read(File file, Consumer<String> consumer) {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStreamReader isr = new InputStreamReader(
+                                     new FileInputStream(file), API.CHARSET);
+             BufferedReader reader = new BufferedReader(isr, BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                consumer.accept(line);
+            }
+        } catch (IOException e) {
+            throw new ToolsException("Failed to read spill file '%s'",
+                                     e, file);
+        }
+    }
+
+    private String toJson(Object object) {
+        try {
+            return this.mapper.writeValueAsString(object);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to serialize %s", e, object);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> clazz) {
+        try {
+            return this.mapper.readValue(json, clazz);
+        } catch (IOException e) {
+            throw new ToolsException("Failed to deserialize %s", e, json);
+        }
+    }
+
+    private int partition(Object id) {
+        return partition(id, 0, this.partitions);
+    }
+
+    /*
+     * The id of vertex may be deserialized as Integer or Long, so hash its
+     * string to get the same partition
+     */
+    private static int partition(Object id, int seed, int partitions) {
+        int hash = Hashing.murmur3_32(seed)
+                          .hashString(id.toString(), StandardCharsets.UTF_8)
+                          .asInt();
+        return Math.floorMod(hash, partitions);
+    }
+
+    private Spill spill(File directory, String prefix) {
+        return new Spill(directory, prefix, this.partitions);
+    }
+
+    /**
+     * The files of partitions to which the lines are appended concurrently
+     */
+    private static class Spill {
+
+        private final File directory;
+        private final String prefix;
+        private final OutputStream[] streams;
+
+        public Spill(File directory, String prefix, int partitions) {
+            this.directory = directory;
+            this.prefix = prefix;
+            this.streams = new OutputStream[partitions];
+        }
+
+        public File file(int partition) {
+            return new File(this.directory, this.prefix + "_" + partition);
+        }
+
+        public void write(int partition, String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            synchronized (this.streams) {
+                if (this.streams[partition] == null) {
+                    this.streams[partition] = this.open(partition);
+                }
+            }
+            OutputStream os = this.streams[partition];
+            synchronized (os) {
+                try {
+                    os.write(bytes);
+                    os.write('\n');
+                } catch (IOException e) {
+                    throw new ToolsException("Failed to write spill file " +
+                                             "'%s'", e, this.file(partition));
+                }
+            }
+        }
+
+        public void close() {
+            synchronized (this.streams) {
+                for (int i = 0; i < this.streams.length; i++) {
+                    if (this.streams[i] != null) {
+                        try {
+                            this.streams[i].close();
+                        } catch (IOException e) {
+                            throw new ToolsException(
+                                      "Failed to close spill file '%s'",
+                                      e, this.file(i));
+                        }
+                        this.streams[i] = null;
+                    }
+                }
+            }
+        }
+
+        public void delete() {
+            for (int i = 0; i < this.streams.length; i++) {
+                FileUtils.deleteQuietly(this.file(i));
+            }
+        }
+
+        private OutputStream open(int partition) {
+            try {
+                FileUtils.forceMkdir(this.directory);
+                return new BufferedOutputStream(new FileOutputStream(
+                                                this.file(partition)),
+                                                BUFFER_SIZE);
+            } catch (IOException e) {
+                throw new ToolsException("Failed to open spill file '%s'",
+                                         e, this.file(partition));
+            }
+        }
+    }
+}
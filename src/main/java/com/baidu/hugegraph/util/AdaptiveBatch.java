@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The size of batch to write elements, which grows while the latency of
+ * requests is under the target and shrinks when the latency is over it.
+ *
+ * The size is halved if a request times out or is too large, and is
+ * limited by the max number of elements for one post if the server
+ * rejects the batch with it.
+ */
+public final class AdaptiveBatch {
+
+    private static final int MIN_SIZE = 10;
+    // Grow by 1/GROWTH_RATIO of the size each time
+    private static final int GROWTH_RATIO = 8;
+
+    private static final Pattern SERVER_LIMIT = Pattern.compile(
+            "Too many \\w+ for one time post, the maximum number is '(\\d+)'");
+    private static final String[] SHRINK_REASONS = {
+            "Read timed out", "Request Entity Too Large", "Payload Too Large"
+    };
+
+    private final long latencyTarget;
+    private int maxSize;
+    private int size;
+
+    public AdaptiveBatch(int initSize, int maxSize, long latencyTarget) {
+        E.checkArgument(maxSize >= MIN_SIZE,
+                        "The max batch size must be >= %s, but got %s",
+                        MIN_SIZE, maxSize);
+        E.checkArgument(latencyTarget > 0L,
+                        "The batch latency target must be > 0, but got %s",
+                        latencyTarget);
+        this.latencyTarget = latencyTarget;
+        this.maxSize = maxSize;
+        this.size = Math.max(MIN_SIZE, Math.min(initSize, maxSize));
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Adjust the size by the latency of a successful request, only the
+     * request of a full batch is taken into account for growth
+     */
+    public synchronized void record(int batchSize, long latency) {
+        if (latency > this.latencyTarget) {
+            int size = (int) (this.size * this.latencyTarget / latency);
+            this.size = Math.min(this.maxSize, Math.max(MIN_SIZE, size));
+        } else if (batchSize >= this.size) {
+            int step = Math.max(1, this.size / GROWTH_RATIO);
+            this.size = Math.min(this.maxSize, this.size + step);
+        }
+    }
+
+    /**
+     * Shrink the size if the request of the batch failed for its size,
+     * returns false if the failure is irrelevant to the size or the size
+     * can't be shrunk any more
+     */
+    public synchronized boolean shrink(Throwable e, int batchSize) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String message = t.getMessage();
+            if (message == null) {
+                continue;
+            }
+            Matcher matcher = SERVER_LIMIT.matcher(message);
+            if (matcher.find()) {
+                this.maxSize = Math.max(1, Integer.parseInt(matcher.group(1)));
+                this.size = Math.min(this.size, this.maxSize);
+                return batchSize > this.size;
+            }
+            for (String reason : SHRINK_REASONS) {
+                if (message.contains(reason)) {
+                    int size = Math.max(MIN_SIZE, batchSize / 2);
+                    this.size = Math.min(this.size, size);
+                    return batchSize > this.size;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Combine the batches of elements read from files into batches of the
+ * size to write, so that the writes aren't limited by the size of batches
+ * in files when the size to write grows.
+ */
+public final class BatchCombiner<T> {
+
+    private final IntSupplier size;
+    private final Consumer<List<T>> consumer;
+    private List<T> batch;
+
+    public BatchCombiner(IntSupplier size, Consumer<List<T>> consumer) {
+        this.size = size;
+        this.consumer = consumer;
+        this.batch = null;
+    }
+
+    public void add(List<T> elements) {
+        int size = this.size.getAsInt();
+        if (this.batch == null) {
+            if (elements.size() >= size) {
+                this.consumer.accept(elements);
+                return;
+            }
+            this.batch = new ArrayList<>(size);
+        }
+        this.batch.addAll(elements);
+        if (this.batch.size() >= size) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Hand the elements combined to the consumer even if they are less
+     * than the size, must be called after the last batch is added
+     */
+    public void flush() {
+        if (this.batch == null) {
+            return;
+        }
+        List<T> batch = this.batch;
+        this.batch = null;
+        this.consumer.accept(batch);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Split a shard into two halves at the middle of its token range.
+ *
+ * The server can only split a whole table, so a shard is split on the
+ * client side according to the position format of the backend:
+ * Cassandra-like backends use signed long tokens, while RocksDB and HBase
+ * use base64 encoded keys, an empty string means the boundary of table.
+ */
+public final class ShardSplitter {
+
+    private static final Set<String> TOKEN_BACKENDS =
+                                     ImmutableSet.of("cassandra", "scylladb");
+    private static final Set<String> KEY_BACKENDS =
+                                     ImmutableSet.of("rocksdb", "hbase");
+
+    private static final String BOUNDARY = "";
+    private static final int MAX_KEY_BYTES = 64;
+
+    /**
+     * Returns the two halves of the shard, or the shard itself if it
+     * can't be split any more
+     */
+    public static List<Shard> bisect(String backend, Shard shard) {
+        String middle;
+        if (TOKEN_BACKENDS.contains(backend)) {
+            middle = middleToken(shard.start(), shard.end());
+        } else if (KEY_BACKENDS.contains(backend)) {
+            middle = middleKey(shard.start(), shard.end());
+        } else {
+            middle = null;
+        }
+        if (middle == null) {
+            return ImmutableList.of(shard);
+        }
+        long length = shard.length() / 2;
+        return ImmutableList.of(new Shard(shard.start(), middle, length),
+                                new Shard(middle, shard.end(),
+                                          shard.length() - length));
+    }
+
+    private static String middleToken(String start, String end) {
+        BigInteger low = new BigInteger(start);
+        BigInteger high = new BigInteger(end);
+        if (high.subtract(low).compareTo(BigInteger.ONE) <= 0) {
+            return null;
+        }
+        return low.add(high).shiftRight(1).toString();
+    }
+
+    private static String middleKey(String start, String end) {
+        byte[] low = BOUNDARY.equals(start) ? new byte[0] : decode(start);
+        byte[] high = BOUNDARY.equals(end) ? null : decode(end);
+        int length = Math.max(1, Math.max(low.length,
+                                          high == null ? 0 : high.length));
+        // Add one more byte of precision each time the range is too narrow
+        for (; length <= MAX_KEY_BYTES; length++) {
+            BigInteger lowNum = new BigInteger(1, Arrays.copyOf(low, length));
+            BigInteger highNum = high == null ?
+                                 BigInteger.ONE.shiftLeft(length * 8) :
+                                 new BigInteger(1, Arrays.copyOf(high, length));
+            byte[] middle = toBytes(lowNum.add(highNum).shiftRight(1), length);
+            if (compare(low, middle) < 0 &&
+                (high == null || compare(middle, high) < 0)) {
+                return Base64.getEncoder().encodeToString(middle);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] decode(String position) {
+        try {
+            return Base64.getDecoder().decode(position);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(
+                      "Invalid shard position '%s'", position), e);
+        }
+    }
+
+    private static byte[] toBytes(BigInteger number, int length) {
+        byte[] bytes = number.toByteArray();
+        byte[] result = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy,
+                         result, length - copy, copy);
+        return result;
+    }
+
+    private static int compare(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (left[i] & 0xff) - (right[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return left.length - right.length;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.rest.ClientException;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.AdaptiveBatch;
+
+public class AdaptiveBatchTest {
+
+    @Test
+    public void testInitSize() {
+        Assert.assertEquals(10, new AdaptiveBatch(5, 100, 1000L).size());
+        Assert.assertEquals(50, new AdaptiveBatch(50, 100, 1000L).size());
+        Assert.assertEquals(100, new AdaptiveBatch(500, 100, 1000L).size());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new AdaptiveBatch(5, 9, 1000L);
+        }, e -> {
+            Assert.assertContains("The max batch size must be >= 10",
+                                  e.getMessage());
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new AdaptiveBatch(5, 100, 0L);
+        }, e -> {
+            Assert.assertContains("The batch latency target must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testGrowUnderLatencyTarget() {
+        AdaptiveBatch batch = new AdaptiveBatch(80, 100, 1000L);
+        batch.record(80, 500L);
+        Assert.assertEquals(90, batch.size());
+        // The partial batch doesn't prove the size is small
+        batch.record(50, 500L);
+        Assert.assertEquals(90, batch.size());
+        batch.record(90, 1000L);
+        Assert.assertEquals(100, batch.size());
+        batch.record(100, 1L);
+        Assert.assertEquals(100, batch.size());
+
+        batch = new AdaptiveBatch(10, 100, 1000L);
+        batch.record(10, 1L);
+        Assert.assertEquals(11, batch.size());
+    }
+
+    @Test
+    public void testShrinkOverLatencyTarget() {
+        AdaptiveBatch batch = new AdaptiveBatch(80, 100, 1000L);
+        batch.record(80, 2000L);
+        Assert.assertEquals(40, batch.size());
+        // Any request over the target shrinks, even for a partial batch
+        batch.record(20, 4000L);
+        Assert.assertEquals(10, batch.size());
+        batch.record(10, 10000L);
+        Assert.assertEquals(10, batch.size());
+    }
+
+    @Test
+    public void testShrinkOnTimeout() {
+        AdaptiveBatch batch = new AdaptiveBatch(100, 100, 1000L);
+        Exception cause = new RuntimeException(
+                          "java.net.SocketTimeoutException: Read timed out");
+        Exception e = new ClientException("Failed to post", cause);
+        Assert.assertTrue(batch.shrink(e, 100));
+        Assert.assertEquals(50, batch.size());
+        // The smaller batch of another thread doesn't shrink it further
+        Assert.assertTrue(batch.shrink(e, 60));
+        Assert.assertEquals(30, batch.size());
+        Assert.assertTrue(batch.shrink(e, 20));
+        Assert.assertEquals(10, batch.size());
+        Assert.assertFalse(batch.shrink(e, 10));
+        Assert.assertEquals(10, batch.size());
+    }
+
+    @Test
+    public void testShrinkOnServerLimit() {
+        AdaptiveBatch batch = new AdaptiveBatch(500, 1000, 1000L);
+        Exception e = new ClientException("Too many edges for one time " +
+                                          "post, the maximum number is '200'");
+        Assert.assertTrue(batch.shrink(e, 500));
+        Assert.assertEquals(200, batch.size());
+        // Never grow beyond the limit of server
+        for (int i = 0; i < 10; i++) {
+            batch.record(batch.size(), 1L);
+        }
+        Assert.assertEquals(200, batch.size());
+        Assert.assertFalse(batch.shrink(e, 200));
+    }
+
+    @Test
+    public void testShrinkOnIrrelevantError() {
+        AdaptiveBatch batch = new AdaptiveBatch(100, 100, 1000L);
+        Assert.assertFalse(batch.shrink(new ClientException("Invalid id"),
+                                        100));
+        Assert.assertFalse(batch.shrink(new RuntimeException(), 100));
+        Assert.assertEquals(100, batch.size());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.serializer.JsonBatchReader;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.AdaptiveBatch;
+import com.baidu.hugegraph.util.BatchCombiner;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+public class BatchCombinerTest {
+
+    // The size of batches in files
+    private static final int BATCH = 500;
+
+    @Test
+    public void testCombineToSize() {
+        AtomicInteger size = new AtomicInteger(3);
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchCombiner<Integer> combiner = new BatchCombiner<>(size::get,
+                                                              batches::add);
+        combiner.add(ImmutableList.of(1, 2));
+        Assert.assertTrue(batches.isEmpty());
+        combiner.add(ImmutableList.of(3, 4));
+        Assert.assertEquals(ImmutableList.of(ImmutableList.of(1, 2, 3, 4)),
+                            batches);
+
+        // The batch not less than size is passed as it is
+        List<Integer> batch = ImmutableList.of(5, 6, 7);
+        combiner.add(batch);
+        Assert.assertSame(batch, batches.get(1));
+
+        size.set(4);
+        combiner.add(ImmutableList.of(8));
+        combiner.add(ImmutableList.of(9, 10));
+        Assert.assertEquals(2, batches.size());
+        combiner.flush();
+        Assert.assertEquals(ImmutableList.of(8, 9, 10), batches.get(2));
+        combiner.flush();
+        Assert.assertEquals(3, batches.size());
+    }
+
+    @Test
+    public void testBatchGrowsPastBatchOfFile() throws IOException {
+        AdaptiveBatch adaptive = new AdaptiveBatch(BATCH, 5000, 1000L);
+        List<Integer> writes = new ArrayList<>();
+        // Write in batches of adaptive size as restore does
+        BatchCombiner<Element> combiner = new BatchCombiner<>(
+                                          adaptive::size, elements -> {
+            int start = 0;
+            while (start < elements.size()) {
+                int end = Math.min(start + adaptive.size(), elements.size());
+                writes.add(end - start);
+                adaptive.record(end - start, 1L);
+                start = end;
+            }
+        });
+        ObjectMapper mapper = new ObjectMapper();
+        try (JsonBatchReader<Element> reader = new JsonBatchReader<>(
+                                               mapper, content(40), "vertices",
+                                               Element.class, BATCH)) {
+            List<Element> elements;
+            while ((elements = reader.next()) != null) {
+                Assert.assertTrue(elements.size() <= BATCH);
+                combiner.add(elements);
+            }
+        }
+        combiner.flush();
+
+        Assert.assertEquals(40 * BATCH,
+                            writes.stream().mapToInt(i -> i).sum());
+        int max = writes.stream().mapToInt(i -> i).max().getAsInt();
+        Assert.assertTrue("Max batch " + max, max > BATCH);
+        Assert.assertTrue("Size " + adaptive.size(), adaptive.size() > BATCH);
+    }
+
+    private static InputStream content(int lines) {
+        StringBuilder builder = new StringBuilder();
+        int id = 0;
+        for (int i = 0; i < lines; i++) {
+            builder.append("{\"vertices\": [");
+            for (int j = 0; j < BATCH; j++) {
+                if (j > 0) {
+                    builder.append(",");
+                }
+                builder.append("{\"id\":").append(id++).append("}");
+            }
+            builder.append("]}\n");
+        }
+        return new ByteArrayInputStream(builder.toString().getBytes(
+                                        StandardCharsets.UTF_8));
+    }
+
+    private static class Element {
+
+        @JsonProperty("id")
+        private Object id;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.LocalDirectory;
+import com.baidu.hugegraph.serializer.BinarySerializer;
+import com.baidu.hugegraph.serializer.SchemaDictionary;
+import com.baidu.hugegraph.structure.GraphElement;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.testutil.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class BinarySerializerTest {
+
+    private static final String DICTIONARY =
+            "{\"vertex_labels\":[\"person\",\"software\"]," +
+            "\"edge_labels\":[\"created\"]," +
+            "\"property_keys\":[\"name\",\"age\",\"time\"]," +
+            "\"date_property_keys\":[\"time\"]}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testSchemaDictionary() throws IOException {
+        SchemaDictionary dictionary = this.dictionary();
+        // The vertex labels and edge labels share the id space
+        Assert.assertEquals(0, dictionary.labelId("person"));
+        Assert.assertEquals(1, dictionary.labelId("software"));
+        Assert.assertEquals(2, dictionary.labelId("created"));
+        Assert.assertEquals("created", dictionary.label(2));
+        Assert.assertEquals(SchemaDictionary.ABSENT,
+                            dictionary.labelId("unknown"));
+        Assert.assertEquals(2, dictionary.propertyKeyId("time"));
+        Assert.assertEquals("age", dictionary.propertyKey(1));
+        Assert.assertEquals(SchemaDictionary.ABSENT,
+                            dictionary.propertyKeyId("unknown"));
+        Assert.assertTrue(dictionary.isDate("time"));
+        Assert.assertFalse(dictionary.isDate("name"));
+    }
+
+    @Test
+    public void testSchemaDictionarySaveAndLoad() throws IOException {
+        File root = Files.createTempDirectory("dictionary").toFile();
+        try {
+            LocalDirectory directory = new LocalDirectory(root.getPath());
+            this.dictionary().save(directory, this.mapper);
+            SchemaDictionary loaded = SchemaDictionary.load(directory,
+                                                            this.mapper);
+            Assert.assertEquals(2, loaded.labelId("created"));
+            Assert.assertEquals(1, loaded.propertyKeyId("age"));
+            Assert.assertTrue(loaded.isDate("time"));
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    @Test
+    public void testVertexRoundTrip() throws IOException {
+        Vertex vertex = new Vertex("person");
+        vertex.id("1:marko");
+        vertex.property("name", "marko");
+        vertex.property("age", 29);
+        vertex.property("time", "2020-01-02 03:04:05.678");
+        vertex.property("long", 1L << 40);
+        vertex.property("negative", -7);
+        vertex.property("float", 1.5F);
+        vertex.property("double", -2.25D);
+        vertex.property("bool", true);
+        vertex.property("null", null);
+        vertex.property("list", ImmutableList.of("a", "b"));
+        vertex.property("map", ImmutableMap.of("k", "v"));
+        vertex.property("big", new BigDecimal("1.5"));
+
+        Vertex result = (Vertex) this.roundTrip(HugeType.VERTEX,
+                                                vertex).get(0);
+        Assert.assertEquals("person", result.label());
+        Assert.assertEquals("1:marko", result.id());
+        Map<String, Object> properties = result.properties();
+        Assert.assertEquals("marko", properties.get("name"));
+        Assert.assertEquals(29, properties.get("age"));
+        Assert.assertEquals("2020-01-02 03:04:05.678", properties.get("time"));
+        Assert.assertEquals(1L << 40, properties.get("long"));
+        Assert.assertEquals(-7, properties.get("negative"));
+        Assert.assertEquals(1.5F, properties.get("float"));
+        Assert.assertEquals(-2.25D, properties.get("double"));
+        Assert.assertEquals(true, properties.get("bool"));
+        Assert.assertTrue(properties.containsKey("null"));
+        Assert.assertNull(properties.get("null"));
+        Assert.assertEquals(ImmutableList.of("a", "b"),
+                            properties.get("list"));
+        Assert.assertEquals(ImmutableMap.of("k", "v"), properties.get("map"));
+        Assert.assertEquals(1.5D, properties.get("big"));
+    }
+
+    @Test
+    public void testEdgeRoundTrip() throws IOException {
+        Edge edge = new Edge("created");
+        edge.id("S1:marko>1>>S2:lop");
+        edge.sourceLabel("person");
+        edge.sourceId("1:marko");
+        edge.targetLabel("software");
+        edge.targetId(2L);
+        edge.property("time", "2020-01-02 03:04:05.678");
+
+        Edge result = (Edge) this.roundTrip(HugeType.EDGE, edge).get(0);
+        Assert.assertEquals("created", result.label());
+        Assert.assertEquals("S1:marko>1>>S2:lop", result.id());
+        Assert.assertEquals("person", result.sourceLabel());
+        Assert.assertEquals("1:marko", result.sourceId());
+        Assert.assertEquals("software", result.targetLabel());
+        Assert.assertEquals(2L, result.targetId());
+        Assert.assertEquals("2020-01-02 03:04:05.678",
+                            result.property("time"));
+    }
+
+    @Test
+    public void testUnknownLabelAndPropertyKey() throws IOException {
+        // The schema created after the dictionary is written with names
+        Vertex vertex = new Vertex("city");
+        vertex.id(1);
+        vertex.property("population", 100);
+
+        Vertex result = (Vertex) this.roundTrip(HugeType.VERTEX,
+                                                vertex).get(0);
+        Assert.assertEquals("city", result.label());
+        Assert.assertEquals(1, result.id());
+        Assert.assertEquals(100, result.property("population"));
+    }
+
+    @Test
+    public void testDateInDifferentTimeZone() throws IOException {
+        Vertex vertex = new Vertex("person");
+        vertex.id(1);
+        vertex.property("time", ImmutableList.of("2020-03-08 02:30:00.000",
+                                                 "2021-12-31 23:59:59.999"));
+        // Not a date of the format, kept as string
+        vertex.property("name", "2020-03-08");
+
+        TimeZone zone = TimeZone.getDefault();
+        byte[] bytes;
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+            bytes = this.encode(HugeType.VERTEX, vertex);
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            Vertex result = (Vertex) this.decode(HugeType.VERTEX,
+                                                 bytes).get(0);
+            Assert.assertEquals(vertex.property("time"),
+                                result.property("time"));
+            Assert.assertEquals("2020-03-08", result.property("name"));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
+    @Test
+    public void testDecodeBlocks() throws IOException {
+        BinarySerializer serializer = new BinarySerializer(this.dictionary(),
+                                                           this.mapper);
+        List<Vertex> vertices = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Vertex vertex = new Vertex("person");
+            vertex.id(i);
+            vertices.add(vertex);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(serializer.encode(HugeType.VERTEX, vertices));
+        baos.write(serializer.encode(HugeType.VERTEX,
+                                     vertices.subList(0, 1)));
+
+        DataInputStream in = BinarySerializer.dataInput(
+                             new ByteArrayInputStream(baos.toByteArray()));
+        Assert.assertEquals(3, serializer.decode(HugeType.VERTEX, in).size());
+        Assert.assertEquals(1, serializer.decode(HugeType.VERTEX, in).size());
+        Assert.assertNull(serializer.decode(HugeType.VERTEX, in));
+    }
+
+    @Test
+    public void testIsBinary() {
+        Assert.assertTrue(BinarySerializer.isBinary("vertices1.bin"));
+        Assert.assertTrue(BinarySerializer.isBinary("vertices1.bin.lz4"));
+        Assert.assertTrue(BinarySerializer.isBinary("edges2.bin.zip"));
+        Assert.assertFalse(BinarySerializer.isBinary("vertices1"));
+        Assert.assertFalse(BinarySerializer.isBinary("vertices1.zst"));
+    }
+
+    private SchemaDictionary dictionary() throws IOException {
+        return this.mapper.readValue(DICTIONARY, SchemaDictionary.class);
+    }
+
+    private List<GraphElement> roundTrip(HugeType type, GraphElement element)
+                                         throws IOException {
+        return this.decode(type, this.encode(type, element));
+    }
+
+    private byte[] encode(HugeType type, GraphElement element)
+                          throws IOException {
+        BinarySerializer serializer = new BinarySerializer(this.dictionary(),
+                                                           this.mapper);
+        return serializer.encode(type, ImmutableList.of(element));
+    }
+
+    private List<GraphElement> decode(HugeType type, byte[] bytes)
+                                      throws IOException {
+        BinarySerializer serializer = new BinarySerializer(this.dictionary(),
+                                                           this.mapper);
+        DataInputStream in = BinarySerializer.dataInput(
+                             new ByteArrayInputStream(bytes));
+        List<GraphElement> elements = serializer.decode(type, in);
+        Assert.assertEquals(1, elements.size());
+        return elements;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.CompressCodec;
+import com.baidu.hugegraph.testutil.Assert;
+
+public class CompressCodecTest {
+
+    private static final byte[] DATA = repeat(
+                                       "{\"id\":1,\"label\":\"person\"}\n",
+                                       1000);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (CompressCodec codec : CompressCodec.values()) {
+            byte[] compressed = compress(codec, CompressCodec.DEFAULT_LEVEL);
+            Assert.assertArrayEquals(DATA, decompress(codec, compressed));
+        }
+    }
+
+    @Test
+    public void testRoundTripWithLevel() throws IOException {
+        byte[] fast = compress(CompressCodec.GZIP, 1);
+        byte[] best = compress(CompressCodec.GZIP, 9);
+        Assert.assertArrayEquals(DATA, decompress(CompressCodec.GZIP, fast));
+        Assert.assertArrayEquals(DATA, decompress(CompressCodec.GZIP, best));
+
+        byte[] zip = compress(CompressCodec.ZIP, 0);
+        Assert.assertArrayEquals(DATA, decompress(CompressCodec.ZIP, zip));
+    }
+
+    @Test
+    public void testFromFile() {
+        Assert.assertEquals(CompressCodec.ZIP,
+                            CompressCodec.fromFile("vertices1.zip"));
+        Assert.assertEquals(CompressCodec.GZIP,
+                            CompressCodec.fromFile("vertices1.gz"));
+        Assert.assertEquals(CompressCodec.LZ4,
+                            CompressCodec.fromFile("vertices1.bin.lz4"));
+        Assert.assertEquals(CompressCodec.ZSTD,
+                            CompressCodec.fromFile("edges12.zst"));
+        Assert.assertEquals(CompressCodec.NONE,
+                            CompressCodec.fromFile("edges12"));
+        Assert.assertEquals(CompressCodec.NONE,
+                            CompressCodec.fromFile("edges12.bin"));
+    }
+
+    @Test
+    public void testFromName() {
+        Assert.assertEquals(CompressCodec.LZ4, CompressCodec.fromName("lz4"));
+        Assert.assertEquals(CompressCodec.ZSTD, CompressCodec.fromName("ZSTD"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            CompressCodec.fromName("snappy");
+        }, e -> {
+            Assert.assertContains("Invalid compress codec 'snappy'",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testCheckLevel() {
+        for (CompressCodec codec : CompressCodec.values()) {
+            codec.checkLevel(CompressCodec.DEFAULT_LEVEL);
+        }
+        CompressCodec.NONE.checkLevel(100);
+        CompressCodec.ZIP.checkLevel(0);
+        CompressCodec.GZIP.checkLevel(9);
+        CompressCodec.LZ4.checkLevel(17);
+        CompressCodec.ZSTD.checkLevel(22);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            CompressCodec.GZIP.checkLevel(10);
+        }, e -> {
+            Assert.assertContains("Invalid compress level 10 for gzip",
+                                  e.getMessage());
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            CompressCodec.LZ4.checkLevel(0);
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            CompressCodec.ZSTD.checkLevel(23);
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            CompressCodec.ZIP.checkLevel(-2);
+        });
+    }
+
+    private static byte[] compress(CompressCodec codec, int level)
+                                   throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = codec.compress(baos, "vertices1", level)) {
+            os.write(DATA);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] decompress(CompressCodec codec, byte[] bytes)
+                                     throws IOException {
+        try (InputStream is = codec.decompress(
+                              new ByteArrayInputStream(bytes), "vertices1")) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.ConcurrencyLimiter;
+import com.baidu.hugegraph.testutil.Assert;
+
+public class ConcurrencyLimiterTest {
+
+    private static final int WINDOW_SIZE = 100;
+
+    @Test
+    public void testInitLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 16, 100L);
+        Assert.assertEquals(4, limiter.limit());
+        Assert.assertEquals(16, limiter.maxLimit());
+        Assert.assertEquals(8, new ConcurrencyLimiter(16, 8, 100L).limit());
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new ConcurrencyLimiter(0, 8, 100L);
+        }, e -> {
+            Assert.assertContains("The initial concurrency must be > 0",
+                                  e.getMessage());
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new ConcurrencyLimiter(4, 0, 100L);
+        }, e -> {
+            Assert.assertContains("The max concurrency must be > 0",
+                                  e.getMessage());
+        });
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new ConcurrencyLimiter(4, 8, 0L);
+        }, e -> {
+            Assert.assertContains("The latency target must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testIncreaseUpToMaxLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 6, 100L);
+        // The limit is only raised after a full window
+        requests(limiter, WINDOW_SIZE - 1, 100L);
+        Assert.assertEquals(4, limiter.limit());
+        requests(limiter, 1, 100L);
+        Assert.assertEquals(5, limiter.limit());
+        // Beyond the number of threads
+        requests(limiter, WINDOW_SIZE * 3, 10L);
+        Assert.assertEquals(6, limiter.limit());
+    }
+
+    @Test
+    public void testDecreaseOverLatencyTarget() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 100L);
+        // A single slow request is within the p99
+        requests(limiter, WINDOW_SIZE - 1, 10L);
+        requests(limiter, 1, 1000L);
+        Assert.assertEquals(10, limiter.limit());
+
+        requests(limiter, WINDOW_SIZE - 2, 10L);
+        requests(limiter, 2, 1000L);
+        Assert.assertEquals(7, limiter.limit());
+    }
+
+    @Test
+    public void testDecreaseOnTimeout() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 100L);
+        requests(limiter, WINDOW_SIZE - 1, 10L);
+        limiter.acquire();
+        limiter.release(0L, true);
+        Assert.assertEquals(7, limiter.limit());
+        // The samples before the timeout are dropped
+        requests(limiter, 1, 10L);
+        Assert.assertEquals(7, limiter.limit());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.release(0L, true);
+        }
+        Assert.assertEquals(1, limiter.limit());
+    }
+
+    @Test
+    public void testAcquireBlockedByLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 100L);
+        limiter.acquire();
+        limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+                // Exit
+            }
+        });
+        thread.start();
+        Assert.assertFalse(acquired.await(100L, TimeUnit.MILLISECONDS));
+        limiter.release(10L, false);
+        Assert.assertTrue(acquired.await(10L, TimeUnit.SECONDS));
+        thread.join();
+    }
+
+    private static void requests(ConcurrencyLimiter limiter, int times,
+                                 long latency) throws InterruptedException {
+        for (int i = 0; i < times; i++) {
+            limiter.acquire();
+            limiter.release(latency, false);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.Endpoints;
+import com.baidu.hugegraph.base.Endpoints.Endpoint;
+import com.baidu.hugegraph.testutil.Assert;
+import com.google.common.collect.ImmutableList;
+
+public class EndpointsTest {
+
+    @Test
+    public void testEmptyEndpoints() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            new Endpoints(ImmutableList.of());
+        }, e -> {
+            Assert.assertContains("The endpoints can't be empty",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testAcquireInRoundRobin() {
+        Endpoints endpoints = endpoints("a", "b", "c");
+        Assert.assertEquals(3, endpoints.size());
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            Endpoint endpoint = endpoints.acquire(null);
+            order.append(endpoint.url());
+            endpoints.release(endpoint, 0L, false);
+        }
+        Assert.assertEquals("abcabc", order.toString());
+        for (Endpoint endpoint : endpoints.all()) {
+            Assert.assertEquals(2L, endpoint.requests());
+        }
+    }
+
+    @Test
+    public void testAcquireLeastInFlight() {
+        Endpoints endpoints = endpoints("a", "b", "c");
+        Assert.assertEquals("a", endpoints.acquire(null).url());
+        Endpoint b = endpoints.acquire(null);
+        Assert.assertEquals("b", b.url());
+        Assert.assertEquals("c", endpoints.acquire(null).url());
+        endpoints.release(b, 0L, false);
+        // The round-robin starts from "a" but "b" has less in-flight
+        Assert.assertEquals("b", endpoints.acquire(null).url());
+        // The ties are broken from "b"
+        Assert.assertEquals("b", endpoints.acquire(null).url());
+    }
+
+    @Test
+    public void testAcquireLeastLatency() {
+        Endpoints endpoints = endpoints("a", "b");
+        Endpoint a = endpoints.acquire(null);
+        Endpoint b = endpoints.acquire(null);
+        endpoints.release(a, 100L, false);
+        endpoints.release(b, 10L, false);
+        for (int i = 0; i < 4; i++) {
+            Endpoint endpoint = endpoints.acquire(null);
+            Assert.assertEquals("b", endpoint.url());
+            endpoints.release(endpoint, 10L, false);
+        }
+        // The slow one is chosen when the fast one is loaded enough
+        List<Endpoint> acquired = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            acquired.add(endpoints.acquire(null));
+        }
+        Assert.assertTrue(acquired.contains(a));
+    }
+
+    @Test
+    public void testSkipFailedEndpoint() {
+        Endpoints endpoints = endpoints("a", "b", "c");
+        Endpoint a = endpoints.acquire(null);
+        endpoints.release(a, 10L, true);
+        Assert.assertEquals(1L, a.failures());
+        Assert.assertFalse(a.healthy(System.currentTimeMillis()));
+        for (int i = 0; i < 6; i++) {
+            Endpoint endpoint = endpoints.acquire(null);
+            Assert.assertNotEquals("a", endpoint.url());
+            endpoints.release(endpoint, 10L, false);
+        }
+
+        // Recovered by a successful request
+        endpoints.release(endpoints.acquire(a), 10L, false);
+        endpoints.acquire(null);
+        endpoints.release(a, 10L, false);
+        Assert.assertTrue(a.healthy(System.currentTimeMillis()));
+        Assert.assertEquals(1L, a.failures());
+    }
+
+    @Test
+    public void testAcquireExcluded() {
+        Endpoints endpoints = endpoints("a", "b");
+        Endpoint a = endpoints.all().get(0);
+        for (int i = 0; i < 4; i++) {
+            Endpoint endpoint = endpoints.acquire(a);
+            Assert.assertEquals("b", endpoint.url());
+            endpoints.release(endpoint, 10L, false);
+        }
+
+        // The excluded one is used if there is no other
+        Endpoints single = endpoints("a");
+        a = single.all().get(0);
+        Assert.assertEquals(a, single.acquire(a));
+        single.release(a, 10L, true);
+        Assert.assertEquals(a, single.acquire(a));
+    }
+
+    @Test
+    public void testAcquireAllDown() {
+        Endpoints endpoints = endpoints("a", "b");
+        Endpoint a = endpoints.all().get(0);
+        Endpoint b = endpoints.all().get(1);
+        // The down time of "b" is doubled by the consecutive failures
+        Endpoint b1 = endpoints.acquire(a);
+        Endpoint b2 = endpoints.acquire(a);
+        endpoints.release(b1, 10L, true);
+        endpoints.release(b2, 10L, true);
+        Assert.assertEquals(2L, b.failures());
+        endpoints.release(endpoints.acquire(b), 10L, true);
+        Assert.assertEquals(1L, a.failures());
+
+        for (int i = 0; i < 4; i++) {
+            Endpoint endpoint = endpoints.acquire(null);
+            Assert.assertEquals(a, endpoint);
+            endpoint.close();
+        }
+        // The excluded one is avoided even if it recovers earlier
+        Assert.assertEquals(b, endpoints.acquire(a));
+    }
+
+    @Test
+    public void testBuildClientLazily() {
+        AtomicInteger clients = new AtomicInteger(0);
+        AtomicInteger scanners = new AtomicInteger(0);
+        Endpoint endpoint = new Endpoint("a", null, url -> {
+            clients.incrementAndGet();
+            return null;
+        }, url -> {
+            scanners.incrementAndGet();
+            return null;
+        });
+        Assert.assertEquals(0, clients.get());
+        endpoint.client();
+        Assert.assertEquals(1, clients.get());
+        endpoint.scanner();
+        Assert.assertEquals(1, scanners.get());
+        Assert.assertEquals(0L, endpoint.requests());
+    }
+
+    private static Endpoints endpoints(String... urls) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url, null, u -> null, u -> null));
+        }
+        return new Endpoints(endpoints);
+    }
+}
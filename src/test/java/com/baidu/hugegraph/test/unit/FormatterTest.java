@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.formatter.Formatter;
+import com.baidu.hugegraph.formatter.JsonFormatter;
+import com.baidu.hugegraph.structure.JsonGraph.JsonEdge;
+import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.testutil.Assert;
+import com.google.common.collect.ImmutableList;
+
+public class FormatterTest {
+
+    @Test
+    public void testJsonFormatterWriter() throws Exception {
+        this.testWriter(new JsonFormatter());
+    }
+
+    @Test
+    public void testDefaultWriter() throws Exception {
+        Formatter formatter = vertex -> vertex.getId() + "," +
+                                        vertex.getLabel() + "," +
+                                        vertex.getEdges().size();
+        this.testWriter(formatter);
+    }
+
+    private void testWriter(Formatter formatter) throws Exception {
+        List<JsonVertex> vertices = vertices();
+        StringBuilder expected = new StringBuilder();
+        for (JsonVertex vertex : vertices) {
+            expected.append(formatter.dump(vertex)).append('\n');
+        }
+
+        ClosingWriter writer = new ClosingWriter();
+        try (Formatter.VertexWriter vertexWriter = formatter.writer(writer)) {
+            for (JsonVertex vertex : vertices) {
+                vertexWriter.write(vertex);
+            }
+        }
+        Assert.assertEquals(expected.toString(), writer.toString());
+        Assert.assertFalse(writer.closed);
+
+        writer = new ClosingWriter();
+        formatter.dump(vertices, writer);
+        Assert.assertEquals(expected.toString(), writer.toString());
+        Assert.assertFalse(writer.closed);
+    }
+
+    private static List<JsonVertex> vertices() {
+        Vertex marko = new Vertex("person");
+        marko.id(1);
+        marko.property("name", "marko");
+        Vertex lop = new Vertex("software");
+        lop.id("2:lop");
+        lop.property("name", "lop");
+        lop.property("lang", "java");
+
+        Edge edge = new Edge("created");
+        edge.id("S1>1>>S2:lop");
+        edge.sourceId(1);
+        edge.targetId("2:lop");
+        edge.property("weight", 0.4D);
+
+        JsonVertex source = JsonVertex.from(marko);
+        source.addEdge(JsonEdge.from(edge));
+        JsonVertex target = JsonVertex.from(lop);
+        target.addEdge(JsonEdge.from(edge));
+        return ImmutableList.of(source, target);
+    }
+
+    private static class ClosingWriter extends StringWriter {
+
+        private boolean closed = false;
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.Journal;
+import com.baidu.hugegraph.base.LocalDirectory;
+import com.baidu.hugegraph.testutil.Assert;
+
+public class JournalTest {
+
+    private File root;
+    private Journal journal;
+
+    @Before
+    public void setup() throws IOException {
+        this.root = Files.createTempDirectory("journal").toFile();
+        LocalDirectory directory = new LocalDirectory(this.root.getPath());
+        this.journal = new Journal(directory, Journal.RESTORE);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        this.journal.close();
+        FileUtils.deleteDirectory(this.root);
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        Assert.assertFalse(this.journal.exists());
+        this.journal.open(true);
+        Assert.assertTrue(this.journal.exists());
+        Assert.assertEquals(0, this.journal.size());
+
+        this.journal.append("vertexlabels");
+        this.journal.append("vertices~0~10");
+        this.journal.append("vertexlabels");
+        Assert.assertTrue(this.journal.contains("vertexlabels"));
+        Assert.assertTrue(this.journal.contains("vertices~0~10"));
+        Assert.assertFalse(this.journal.contains("edges"));
+        Assert.assertEquals(2, this.journal.size());
+        Assert.assertEquals("vertexlabels\nvertices~0~10\n", this.content());
+    }
+
+    @Test
+    public void testAppendWithoutOpen() {
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            this.journal.append("vertexlabels");
+        }, e -> {
+            Assert.assertContains("The journal 'journal_restore' is not " +
+                                  "opened", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        this.journal.open(true);
+        this.journal.append("a");
+        this.journal.close();
+
+        this.journal.open(true);
+        Assert.assertTrue(this.journal.contains("a"));
+        this.journal.append("b");
+        this.journal.close();
+        Assert.assertEquals("a\nb\n", this.content());
+
+        // Start over without resume
+        this.journal.open(false);
+        Assert.assertEquals(0, this.journal.size());
+        Assert.assertEquals("", this.content());
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        this.write("a\n\nb\nvertices~0~1");
+        this.journal.open(true);
+        Assert.assertEquals(2, this.journal.size());
+        Assert.assertTrue(this.journal.contains("a"));
+        Assert.assertTrue(this.journal.contains("b"));
+        Assert.assertFalse(this.journal.contains("vertices~0~1"));
+
+        // The torn line is dropped from file rather than appended to
+        this.journal.append("c");
+        this.journal.close();
+        String content = this.content();
+        Assert.assertFalse(content.contains("vertices~0~1"));
+        Assert.assertTrue(content.endsWith("c\n"));
+        Assert.assertEquals(3, content.split("\n").length);
+    }
+
+    private void write(String content) throws IOException {
+        File file = new File(this.root, Journal.RESTORE);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+    }
+
+    private String content() throws IOException {
+        File file = new File(this.root, Journal.RESTORE);
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
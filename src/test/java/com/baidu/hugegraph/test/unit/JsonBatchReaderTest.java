@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.rest.SerializeException;
+import com.baidu.hugegraph.serializer.JsonBatchReader;
+import com.baidu.hugegraph.testutil.Assert;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonBatchReaderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testReadBatchesAcrossLines() throws IOException {
+        String content = "{\"vertices\": [{\"id\":1},{\"id\":2}]}\n" +
+                         "{\"vertices\": [{\"id\":3}]}\n" +
+                         "{\"vertices\": [{\"id\":4},{\"id\":5}]}\n";
+        try (JsonBatchReader<Element> reader = this.reader(content, 2)) {
+            Assert.assertEquals("[1, 2]", ids(reader.next()));
+            Assert.assertEquals("[3, 4]", ids(reader.next()));
+            Assert.assertEquals("[5]", ids(reader.next()));
+            Assert.assertNull(reader.next());
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testReadSkipOtherFields() throws IOException {
+        String content = "{\"other\": {\"vertices\": [{\"id\":0}]}, " +
+                         "\"vertices\": [{\"id\":1,\"label\":\"person\"}]," +
+                         " \"count\": 1}\n" +
+                         "{\"vertices\": []}\n" +
+                         "{\"edges\": [{\"id\":2}]}\n";
+        try (JsonBatchReader<Element> reader = this.reader(content, 10)) {
+            List<Element> batch = reader.next();
+            Assert.assertEquals("[1]", ids(batch));
+            Assert.assertEquals("person", batch.get(0).label);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testReadEmptyContent() throws IOException {
+        try (JsonBatchReader<Element> reader = this.reader("", 10)) {
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testReadInvalidContent() throws IOException {
+        try (JsonBatchReader<Element> reader = this.reader("[1, 2]", 10)) {
+            Assert.assertThrows(SerializeException.class, () -> {
+                reader.next();
+            }, e -> {
+                Assert.assertContains("Invalid token", e.getMessage());
+            });
+        }
+    }
+
+    @Test
+    public void testInvalidBatchSize() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            this.reader("", 0);
+        }, e -> {
+            Assert.assertContains("The batch size must be > 0",
+                                  e.getMessage());
+        });
+    }
+
+    @Test
+    public void testLeaveStreamOpen() throws IOException {
+        boolean[] closed = new boolean[1];
+        InputStream is = new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        new JsonBatchReader<>(this.mapper, is, "vertices", Element.class,
+                              10).close();
+        Assert.assertFalse(closed[0]);
+    }
+
+    private JsonBatchReader<Element> reader(String content, int batchSize)
+                                            throws IOException {
+        InputStream is = new ByteArrayInputStream(
+                         content.getBytes(StandardCharsets.UTF_8));
+        return new JsonBatchReader<>(this.mapper, is, "vertices",
+                                     Element.class, batchSize);
+    }
+
+    private static String ids(List<Element> elements) {
+        StringBuilder builder = new StringBuilder("[");
+        for (Element element : elements) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(element.id);
+        }
+        return builder.append("]").toString();
+    }
+
+    private static class Element {
+
+        @JsonProperty("id")
+        private Object id;
+        @JsonProperty("label")
+        private String label;
+    }
+}
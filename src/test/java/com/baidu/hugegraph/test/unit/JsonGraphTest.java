@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.structure.JsonGraph;
+import com.baidu.hugegraph.structure.JsonGraph.JsonEdge;
+import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.testutil.Assert;
+
+public class JsonGraphTest {
+
+    @Test
+    public void testEdgesOfVertex() {
+        JsonGraph graph = new JsonGraph(16);
+        graph.put(vertex("person", 1));
+        graph.put(vertex("person", 2));
+        graph.put(vertex("software", "3:lop"));
+        graph.put(edge("e1", "person", 1, "person", 2));
+        graph.put(edge("e2", "person", 1, "software", "3:lop"));
+        graph.put(edge("e3", "person", 2, "software", "3:lop"));
+        // Self-loop edge is held once
+        graph.put(edge("e4", "person", 2, "person", 2));
+        // Edges without source or target vertex are ignored
+        graph.put(edge("e5", "person", 1, "person", 4));
+        graph.put(edge("e6", "person", 5, "person", 1));
+        graph.put(edge("e7", "software", 1, "person", 2));
+
+        Assert.assertEquals("[e1, e2]", edgeIds(graph, "person", 1));
+        Assert.assertEquals("[e1, e3, e4]", edgeIds(graph, "person", 2));
+        Assert.assertEquals("[e2, e3]", edgeIds(graph, "software", "3:lop"));
+    }
+
+    @Test
+    public void testEdgeColumns() {
+        JsonGraph graph = new JsonGraph(16);
+        graph.put(vertex("person", 1));
+        graph.put(vertex("software", "3:lop"));
+        Edge edge = edge("e1", "person", 1, "software", "3:lop");
+        edge.property("weight", 0.5D);
+        edge.property("date", "2020-10-17");
+        graph.put(edge);
+        graph.put(edge("e2", "person", 1, "software", new String("3:lop")));
+
+        List<JsonEdge> edges = edges(graph, "person", 1);
+        JsonEdge e1 = edges.get(0);
+        Assert.assertEquals("e1", e1.getId());
+        Assert.assertEquals("created", e1.getLabel());
+        Assert.assertEquals(1, e1.getSource());
+        Assert.assertEquals("3:lop", e1.getTarget());
+        Assert.assertEquals(0.5D, e1.property("weight"));
+        Assert.assertEquals("{weight=0.5, date=2020-10-17}",
+                            e1.properties().toString());
+
+        JsonEdge e2 = edges.get(1);
+        Assert.assertEquals(0, e2.getProperties().size());
+        // The id of vertex is shared by the edges
+        Object target = graph.table("software").get("3:lop").getId();
+        Assert.assertSame(target, e1.getTarget());
+        Assert.assertSame(target, e2.getTarget());
+    }
+
+    @Test
+    public void testAttachEdges() {
+        // The partition holds vertex 1 and 2 but not 3
+        JsonGraph graph = new JsonGraph(16);
+        graph.put(vertex("person", 1));
+        graph.put(vertex("person", 2));
+        graph.attach(edge("e1", "person", 1, "person", 3));
+        graph.attach(edge("e2", "person", 3, "person", 2));
+        graph.attach(edge("e3", "person", 1, "person", 2));
+        graph.attach(edge("e4", "person", 3, "person", 3));
+
+        Assert.assertEquals("[e1, e3]", edgeIds(graph, "person", 1));
+        Assert.assertEquals("[e2, e3]", edgeIds(graph, "person", 2));
+        JsonEdge e2 = edges(graph, "person", 2).get(0);
+        Assert.assertEquals(3, e2.getSource());
+    }
+
+    @Test
+    public void testRebuildAdjacency() {
+        JsonGraph graph = new JsonGraph(16);
+        graph.put(vertex("person", 1));
+        graph.put(vertex("person", 2));
+        graph.put(edge("e1", "person", 1, "person", 2));
+        Assert.assertEquals("[e1]", edgeIds(graph, "person", 1));
+
+        // Add more edges and vertices after built
+        graph.put(vertex("person", 3));
+        graph.put(edge("e2", "person", 3, "person", 1));
+        Assert.assertEquals("[e1, e2]", edgeIds(graph, "person", 1));
+        Assert.assertEquals("[e2]", edgeIds(graph, "person", 3));
+
+        graph.put(vertex("person", 4));
+        Assert.assertEquals("[]", edgeIds(graph, "person", 4));
+    }
+
+    @Test
+    public void testAddEdgesConcurrently() throws Exception {
+        int vertices = 100;
+        int threads = 8;
+        int edgesPerThread = 5000;
+        JsonGraph graph = new JsonGraph(16);
+        for (int i = 0; i < vertices; i++) {
+            graph.put(vertex("person", i));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < edgesPerThread; i++) {
+                        int source = i % vertices;
+                        int target = (i + thread + 1) % vertices;
+                        graph.put(edge(thread + "-" + i, "person", source,
+                                       "person", target));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        int total = 0;
+        List<String> ids = new ArrayList<>();
+        for (JsonVertex vertex : graph.table("person").values()) {
+            for (JsonEdge edge : vertex.getEdges()) {
+                total++;
+                if (vertex.getId().equals(edge.getSource())) {
+                    ids.add(edge.getId());
+                }
+            }
+        }
+        // Each edge is held by both of its vertices
+        Assert.assertEquals(2 * threads * edgesPerThread, total);
+        Assert.assertEquals(threads * edgesPerThread,
+                            ids.stream().distinct().count());
+    }
+
+    @Test
+    public void testAddEdgeToVertexOfGraph() {
+        JsonGraph graph = new JsonGraph(16);
+        graph.put(vertex("person", 1));
+        JsonVertex vertex = graph.table("person").get(1);
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            vertex.addEdge(new JsonEdge());
+        }, e -> {
+            Assert.assertContains("Can't add edge to the vertex of graph",
+                                  e.getMessage());
+        });
+    }
+
+    private static Vertex vertex(String label, Object id) {
+        Vertex vertex = new Vertex(label);
+        vertex.id(id);
+        return vertex;
+    }
+
+    private static Edge edge(String id, String sourceLabel, Object sourceId,
+                             String targetLabel, Object targetId) {
+        Edge edge = new Edge("created");
+        edge.id(id);
+        edge.sourceLabel(sourceLabel);
+        edge.sourceId(sourceId);
+        edge.targetLabel(targetLabel);
+        edge.targetId(targetId);
+        return edge;
+    }
+
+    private static List<JsonEdge> edges(JsonGraph graph, String label,
+                                        Object id) {
+        List<JsonEdge> edges = new ArrayList<>(graph.table(label).get(id)
+                                                    .getEdges());
+        edges.sort((e1, e2) -> e1.getId().compareTo(e2.getId()));
+        return edges;
+    }
+
+    private static String edgeIds(JsonGraph graph, String label, Object id) {
+        List<String> ids = new ArrayList<>();
+        for (JsonEdge edge : graph.table(label).get(id).getEdges()) {
+            ids.add(edge.getId());
+        }
+        Collections.sort(ids);
+        return ids.toString();
+    }
+}
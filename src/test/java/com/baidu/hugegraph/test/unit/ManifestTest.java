@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.LocalDirectory;
+import com.baidu.hugegraph.base.Manifest;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.baidu.hugegraph.testutil.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+public class ManifestTest {
+
+    private File root;
+    private LocalDirectory directory;
+    private Manifest manifest;
+
+    @Before
+    public void setup() throws IOException {
+        this.root = Files.createTempDirectory("manifest").toFile();
+        this.directory = new LocalDirectory(this.root.getPath());
+        this.manifest = new Manifest(this.directory, new ObjectMapper(),
+                                     HugeType.VERTEX);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        this.manifest.close();
+        FileUtils.deleteDirectory(this.root);
+    }
+
+    @Test
+    public void testAppendAndRead() {
+        Assert.assertFalse(this.manifest.exists());
+        Assert.assertTrue(this.manifest.read().isEmpty());
+
+        this.manifest.open(false);
+        this.manifest.append(entry("0", "10", 0L, "a"));
+        this.manifest.append(entry("10", "20", 100L, "b"));
+        this.manifest.close();
+
+        Assert.assertTrue(this.manifest.exists());
+        List<Manifest.Entry> entries = this.manifest.read();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("0~10", Manifest.shardKey(entries.get(0).shard));
+        Assert.assertEquals("a", entries.get(0).hash);
+        Assert.assertEquals(100L, entries.get(1).begin);
+        Assert.assertEquals(150L, entries.get(1).end);
+        Assert.assertEquals(50L, entries.get(1).length());
+        Assert.assertNull(entries.get(1).directory);
+    }
+
+    @Test
+    public void testAppendAfterReopen() {
+        this.manifest.open(false);
+        this.manifest.append(entry("0", "10", 0L, "a"));
+        this.manifest.open(true);
+        this.manifest.append(entry("10", "20", 50L, "b"));
+        this.manifest.close();
+        Assert.assertEquals(2, this.manifest.read().size());
+
+        this.manifest.open(false);
+        this.manifest.close();
+        Assert.assertTrue(this.manifest.read().isEmpty());
+    }
+
+    @Test
+    public void testAppendWithoutOpen() {
+        Assert.assertThrows(IllegalStateException.class, () -> {
+            this.manifest.append(entry("0", "10", 0L, "a"));
+        }, e -> {
+            Assert.assertContains("is not opened", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testReadIgnoreTornTail() throws IOException {
+        this.manifest.open(false);
+        this.manifest.append(entry("0", "10", 0L, "a"));
+        this.manifest.close();
+        try (OutputStream os = this.directory.outputStream(
+                                              this.manifest.file(),
+                                              false, false)) {
+            os.write("{\"shard\":{\"start\":\"10\",\"e"
+                     .getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<Manifest.Entry> entries = this.manifest.read();
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("0~10", Manifest.shardKey(entries.get(0).shard));
+    }
+
+    @Test
+    public void testRewrite() {
+        this.manifest.open(false);
+        this.manifest.append(entry("0", "10", 0L, "a"));
+        this.manifest.append(entry("10", "20", 50L, "b"));
+        Manifest.Entry moved = this.manifest.read().get(1).moveTo("file_1",
+                                                                  0L);
+        this.manifest.rewrite(ImmutableList.of(moved));
+        this.manifest.close();
+
+        List<Manifest.Entry> entries = this.manifest.read();
+        Assert.assertEquals(1, entries.size());
+        Assert.assertEquals("file_1", entries.get(0).file);
+        Assert.assertEquals(0L, entries.get(0).begin);
+        Assert.assertEquals(50L, entries.get(0).end);
+        Assert.assertEquals("b", entries.get(0).hash);
+    }
+
+    @Test
+    public void testWriteAndReadShards() {
+        Assert.assertNull(this.manifest.readShards());
+
+        List<Shard> shards = ImmutableList.of(new Shard("0", "10", 5L),
+                                              new Shard("10", "20", 7L));
+        this.manifest.writeShards(shards);
+        List<Shard> read = this.manifest.readShards();
+        Assert.assertEquals(2, read.size());
+        Assert.assertEquals("10", read.get(1).start());
+        Assert.assertEquals("20", read.get(1).end());
+        Assert.assertEquals(7L, read.get(1).length());
+    }
+
+    @Test
+    public void testInheritEntry() {
+        Manifest.Entry entry = entry("0", "10", 0L, "a");
+        Manifest.Entry inherited = entry.inherit("/backup/base");
+        Assert.assertEquals("/backup/base", inherited.directory);
+        Assert.assertEquals(entry.file, inherited.file);
+        Assert.assertEquals(entry.hash, inherited.hash);
+
+        // The entry inherited again still refers to the original directory
+        Manifest.Entry again = inherited.inherit("/backup/increment");
+        Assert.assertEquals("/backup/base", again.directory);
+    }
+
+    private static Manifest.Entry entry(String start, String end,
+                                        long begin, String hash) {
+        return new Manifest.Entry(new Shard(start, end, 10L), "vertices_0",
+                                  begin, begin + 50L, 3L, hash);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.hugegraph.base.ShardScanner;
+import com.baidu.hugegraph.exception.ServerException;
+import com.baidu.hugegraph.exception.ToolsException;
+import com.baidu.hugegraph.structure.constant.HugeType;
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.baidu.hugegraph.testutil.Assert;
+import com.google.common.collect.ImmutableSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ShardScannerTest {
+
+    private static final Shard SHARD = new Shard("AA==", "gA==", 0L);
+
+    private HttpServer server;
+    private volatile int status;
+    private volatile String response;
+    private volatile String query;
+    private volatile String authorization;
+    private Set<Object> written;
+    private ByteArrayOutputStream out;
+
+    @Before
+    public void setup() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0),
+                                        0);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+        this.status = 200;
+        this.written = new HashSet<>();
+        this.out = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void teardown() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testScanInLinesOfBatch() {
+        this.response = "{\"vertices\": [{\"id\":1,\"label\":\"person\"}," +
+                        "{\"id\":2,\"properties\":{\"name\":\"a\"}}," +
+                        "{\"id\":3}], \"page\": \"next\"}";
+        ShardScanner.Page page = this.scan(null, HugeType.VERTEX, "", 2);
+        Assert.assertEquals(3L, page.count());
+        Assert.assertEquals("next", page.page());
+        Assert.assertEquals("{\"vertices\": [{\"id\":1,\"label\":\"person\"}," +
+                            "{\"id\":2,\"properties\":{\"name\":\"a\"}}]}\n" +
+                            "{\"vertices\": [{\"id\":3}]}\n",
+                            this.output());
+        Assert.assertEquals(ImmutableSet.of(1L, 2L, 3L), this.written);
+
+        Assert.assertEquals("start=AA%3D%3D&end=gA%3D%3D&page=&" +
+                            "page_limit=100000", this.query);
+        Assert.assertNull(this.authorization);
+    }
+
+    @Test
+    public void testScanSkipWrittenElements() {
+        this.response = "{\"vertices\": [{\"id\":1},{\"label\":\"a\"," +
+                        "\"id\":\"2\"},{\"id\":2},{\"id\":\"3\"}," +
+                        "{\"id\":4}], \"page\": null}";
+        this.written.addAll(ImmutableSet.of(1L, "2", 4L));
+        ShardScanner.Page page = this.scan(null, HugeType.VERTEX, "", 1);
+        Assert.assertEquals(5L, page.count());
+        Assert.assertEquals("{\"vertices\": [{\"id\":2}]}\n" +
+                            "{\"vertices\": [{\"id\":\"3\"}]}\n",
+                            this.output());
+        Assert.assertEquals(ImmutableSet.of(1L, "2", 2L, "3", 4L),
+                            this.written);
+
+        // All the elements of page are written
+        this.out.reset();
+        page = this.scan(null, HugeType.VERTEX, "", 10);
+        Assert.assertEquals(5L, page.count());
+        Assert.assertEquals("", this.output());
+    }
+
+    @Test
+    public void testScanRetryAfterBrokenResponse() {
+        this.response = "{\"vertices\": [{\"id\":1},{\"id\":2}," +
+                        "{\"id\":3},{\"id\"";
+        Assert.assertThrows(ToolsException.class, () -> {
+            this.scan(null, HugeType.VERTEX, "", 2);
+        });
+        // The completed line is written and the broken one is dropped
+        Assert.assertEquals("{\"vertices\": [{\"id\":1},{\"id\":2}]}\n",
+                            this.output());
+        Assert.assertEquals(ImmutableSet.of(1L, 2L), this.written);
+
+        this.response = "{\"vertices\": [{\"id\":1},{\"id\":2}," +
+                        "{\"id\":3},{\"id\":4}], \"page\": null}";
+        ShardScanner.Page page = this.scan(null, HugeType.VERTEX, "", 2);
+        Assert.assertEquals(4L, page.count());
+        Assert.assertEquals("{\"vertices\": [{\"id\":1},{\"id\":2}]}\n" +
+                            "{\"vertices\": [{\"id\":3},{\"id\":4}]}\n",
+                            this.output());
+    }
+
+    @Test
+    public void testScanWithoutPaging() {
+        this.response = "{\"edges\": [{\"id\":\"e1\"}]}";
+        ShardScanner.Page page = this.scan("admin", HugeType.EDGE, null, 10);
+        Assert.assertEquals(1L, page.count());
+        Assert.assertNull(page.page());
+        Assert.assertEquals("{\"edges\": [{\"id\":\"e1\"}]}\n",
+                            this.output());
+        Assert.assertEquals("start=AA%3D%3D&end=gA%3D%3D", this.query);
+        // Base64 of "admin:pa"
+        Assert.assertEquals("Basic YWRtaW46cGE=", this.authorization);
+    }
+
+    @Test
+    public void testScanEmptyShard() {
+        this.response = "{\"vertices\": [], \"page\": null}";
+        ShardScanner.Page page = this.scan(null, HugeType.VERTEX, "", 10);
+        Assert.assertEquals(0L, page.count());
+        Assert.assertNull(page.page());
+        Assert.assertEquals("", this.output());
+        Assert.assertTrue(this.written.isEmpty());
+    }
+
+    @Test
+    public void testScanWithServerError() {
+        this.status = 500;
+        this.response = "{\"message\": \"Read timed out\"}";
+        Assert.assertThrows(ServerException.class, () -> {
+            this.scan(null, HugeType.VERTEX, "", 10);
+        }, e -> {
+            Assert.assertEquals(500, ((ServerException) e).status());
+            Assert.assertContains("status 500", e.getMessage());
+            Assert.assertContains("Read timed out", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testScanWithRequestError() {
+        this.status = 404;
+        this.response = "{\"message\": \"Graph not found\"}";
+        Assert.assertThrows(ServerException.class, () -> {
+            this.scan(null, HugeType.VERTEX, "", 10);
+        }, e -> {
+            Assert.assertEquals(404, ((ServerException) e).status());
+            Assert.assertContains("Graph not found", e.getMessage());
+        });
+    }
+
+    @Test
+    public void testScanWithInvalidResponse() {
+        this.response = "[]";
+        Assert.assertThrows(ToolsException.class, () -> {
+            this.scan(null, HugeType.VERTEX, "", 10);
+        }, e -> {
+            Assert.assertContains("Failed to scan vertices", e.getMessage());
+        });
+
+        this.response = "{\"vertices\": [{\"label\":\"person\"}]}";
+        Assert.assertThrows(ToolsException.class, () -> {
+            this.scan(null, HugeType.VERTEX, "", 10);
+        }, e -> {
+            Assert.assertContains("Failed to scan vertices", e.getMessage());
+        });
+    }
+
+    private ShardScanner.Page scan(String username, HugeType type,
+                                   String page, int batch) {
+        return this.scanner(username).scan(type, SHARD, page, batch,
+                                           this.written, this.out);
+    }
+
+    private String output() {
+        return new String(this.out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private ShardScanner scanner(String username) {
+        String url = "http://127.0.0.1:" +
+                     this.server.getAddress().getPort();
+        return new ShardScanner(url, "hugegraph", username, "pa", 10,
+                                null, null);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        this.query = exchange.getRequestURI().getRawQuery();
+        this.authorization = exchange.getRequestHeaders()
+                                     .getFirst("Authorization");
+        byte[] body = this.response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(this.status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.baidu.hugegraph.structure.graph.Shard;
+import com.baidu.hugegraph.testutil.Assert;
+import com.baidu.hugegraph.util.ShardSplitter;
+
+public class ShardSplitterTest {
+
+    @Test
+    public void testBisectTokenShard() {
+        List<Shard> halves = ShardSplitter.bisect("cassandra",
+                                                  new Shard("-100", "100", 11));
+        Assert.assertEquals(2, halves.size());
+        assertShard("-100", "0", 5, halves.get(0));
+        assertShard("0", "100", 6, halves.get(1));
+
+        halves = ShardSplitter.bisect("scylladb",
+                                      new Shard(String.valueOf(Long.MIN_VALUE),
+                                                String.valueOf(Long.MAX_VALUE),
+                                                2));
+        Assert.assertEquals(2, halves.size());
+        assertShard(String.valueOf(Long.MIN_VALUE), "-1", 1, halves.get(0));
+        assertShard("-1", String.valueOf(Long.MAX_VALUE), 1, halves.get(1));
+    }
+
+    @Test
+    public void testBisectNarrowTokenShard() {
+        Shard shard = new Shard("7", "8", 100);
+        List<Shard> halves = ShardSplitter.bisect("cassandra", shard);
+        Assert.assertEquals(1, halves.size());
+        Assert.assertSame(shard, halves.get(0));
+    }
+
+    @Test
+    public void testBisectWholeKeyTable() {
+        List<Shard> halves = ShardSplitter.bisect("rocksdb",
+                                                  new Shard("", "", 10));
+        Assert.assertEquals(2, halves.size());
+        assertShard("", key(0x80), 5, halves.get(0));
+        assertShard(key(0x80), "", 5, halves.get(1));
+    }
+
+    @Test
+    public void testBisectNarrowKeyShardWithMoreBytes() {
+        List<Shard> halves = ShardSplitter.bisect("hbase",
+                                                  new Shard(key(0x00),
+                                                            key(0x01), 4));
+        Assert.assertEquals(2, halves.size());
+        assertShard(key(0x00), key(0x00, 0x80), 2, halves.get(0));
+        assertShard(key(0x00, 0x80), key(0x01), 2, halves.get(1));
+    }
+
+    @Test
+    public void testBisectKeyShardRepeatedly() {
+        Shard shard = new Shard("", key(0x10), 1L << 20);
+        for (int i = 0; i < 40; i++) {
+            List<Shard> halves = ShardSplitter.bisect("rocksdb", shard);
+            Assert.assertEquals(2, halves.size());
+            Shard low = halves.get(0);
+            Shard high = halves.get(1);
+            Assert.assertEquals(shard.start(), low.start());
+            Assert.assertEquals(low.end(), high.start());
+            Assert.assertEquals(shard.end(), high.end());
+            Assert.assertEquals(shard.length(), low.length() + high.length());
+            Assert.assertTrue(compare(low.start(), low.end()) < 0);
+            Assert.assertTrue(compare(high.start(), high.end()) < 0);
+            shard = i % 2 == 0 ? low : high;
+        }
+    }
+
+    @Test
+    public void testBisectUnsupportedBackend() {
+        Shard shard = new Shard("0", "100", 10);
+        List<Shard> halves = ShardSplitter.bisect("memory", shard);
+        Assert.assertEquals(1, halves.size());
+        Assert.assertSame(shard, halves.get(0));
+    }
+
+    @Test
+    public void testBisectInvalidKey() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> {
+            ShardSplitter.bisect("rocksdb", new Shard("", "%%%", 10));
+        }, e -> {
+            Assert.assertContains("Invalid shard position '%%%'",
+                                  e.getMessage());
+        });
+    }
+
+    private static void assertShard(String start, String end, long length,
+                                    Shard shard) {
+        Assert.assertEquals(start, shard.start());
+        Assert.assertEquals(end, shard.end());
+        Assert.assertEquals(length, shard.length());
+    }
+
+    private static String key(int... bytes) {
+        byte[] key = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            key[i] = (byte) bytes[i];
+        }
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    private static int compare(String left, String right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            // The empty start or end is the boundary of table
+            return -1;
+        }
+        byte[] low = Base64.getDecoder().decode(left);
+        byte[] high = Base64.getDecoder().decode(right);
+        for (int i = 0; i < Math.min(low.length, high.length); i++) {
+            int cmp = (low[i] & 0xff) - (high[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return low.length - high.length;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.hugegraph.structure.JsonGraph;
+import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.SortedJsonGraph;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.testutil.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SortedJsonGraphTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private File root;
+    private SortedJsonGraph sorted;
+
+    @Before
+    public void setup() throws IOException {
+        this.root = Files.createTempDirectory("sort").toFile();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if (this.sorted != null) {
+            this.sorted.close();
+        }
+        FileUtils.deleteDirectory(this.root);
+    }
+
+    @Test
+    public void testJoinInBudget() {
+        this.testJoin(64 * MB, 1);
+    }
+
+    @Test
+    public void testJoinOverBudget() {
+        // A few records per run, which are merged in several passes
+        this.testJoin(1024L, 1);
+    }
+
+    @Test
+    public void testJoinPutConcurrently() {
+        // The runs are spilled by the threads while others keep adding
+        this.testJoin(4096L, 4);
+    }
+
+    @Test
+    public void testJoinEmptyGraph() {
+        SortedJsonGraph graph = this.graph(MB);
+        List<JsonVertex> vertices = new ArrayList<>();
+        graph.join(vertices::add);
+        Assert.assertTrue(vertices.isEmpty());
+    }
+
+    @Test
+    public void testJoinDuplicateVertex() {
+        SortedJsonGraph graph = this.graph(MB);
+        List<Vertex> vertices = SpilledJsonGraphTest.vertices(2);
+        graph.put(vertices.get(0));
+        graph.put(vertices.get(0));
+        graph.put(vertices.get(1));
+        for (Edge edge : SpilledJsonGraphTest.edges(vertices, 10)) {
+            graph.put(edge);
+        }
+        List<JsonVertex> result = new ArrayList<>();
+        graph.join(result::add);
+        Assert.assertEquals(2, result.size());
+    }
+
+    private void testJoin(long budget, int threads) {
+        JsonGraph expected = new JsonGraph(16);
+        SortedJsonGraph graph = this.graph(budget);
+        List<Vertex> vertices = SpilledJsonGraphTest.vertices(300);
+        List<Edge> edges = SpilledJsonGraphTest.edges(vertices, 1000);
+        for (Vertex vertex : vertices) {
+            expected.put(vertex);
+        }
+        for (Edge edge : edges) {
+            expected.put(edge);
+        }
+        // Put the vertices and edges of each part in its own thread
+        List<Thread> putters = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int part = t;
+            putters.add(new Thread(() -> {
+                for (int i = part; i < vertices.size(); i += threads) {
+                    graph.put(vertices.get(i));
+                }
+                for (int i = part; i < edges.size(); i += threads) {
+                    graph.put(edges.get(i));
+                }
+            }));
+        }
+        for (Thread putter : putters) {
+            putter.start();
+        }
+        for (Thread putter : putters) {
+            try {
+                putter.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        Map<String, String> actual = new TreeMap<>();
+        List<String> keys = new ArrayList<>();
+        graph.join(vertex -> {
+            String key = vertex.getId().toString();
+            Assert.assertFalse(actual.containsKey(key));
+            actual.put(key, SpilledJsonGraphTest.describe(vertex));
+            keys.add(this.json(vertex.getId()));
+        });
+        Map<String, String> result = new TreeMap<>();
+        SpilledJsonGraphTest.collect(expected, result);
+        Assert.assertEquals(result, actual);
+
+        // Passed in the order of vertex id
+        for (int i = 1; i < keys.size(); i++) {
+            Assert.assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+    }
+
+    private SortedJsonGraph graph(long budget) {
+        this.sorted = new SortedJsonGraph(new File(this.root, "sort"),
+                                          this.mapper, budget);
+        return this.sorted;
+    }
+
+    private String json(Object id) {
+        try {
+            return this.mapper.writeValueAsString(id);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 HugeGraph Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.baidu.hugegraph.test.unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.baidu.hugegraph.structure.JsonGraph;
+import com.baidu.hugegraph.structure.JsonGraph.JsonEdge;
+import com.baidu.hugegraph.structure.JsonGraph.JsonVertex;
+import com.baidu.hugegraph.structure.SpilledJsonGraph;
+import com.baidu.hugegraph.structure.graph.Edge;
+import com.baidu.hugegraph.structure.graph.Vertex;
+import com.baidu.hugegraph.testutil.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SpilledJsonGraphTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private File root;
+    private SpilledJsonGraph spilled;
+
+    @Before
+    public void setup() throws IOException {
+        this.root = Files.createTempDirectory("spill").toFile();
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if (this.spilled != null) {
+            this.spilled.close();
+        }
+        FileUtils.deleteDirectory(this.root);
+    }
+
+    @Test
+    public void testPartitionsByBudget() {
+        Assert.assertEquals(4, this.graph(1024L).partitions());
+        Assert.assertEquals(170, this.graph(64 * MB).partitions());
+        Assert.assertEquals(256, this.graph(1024 * MB).partitions());
+    }
+
+    @Test
+    public void testJoinInBudget() {
+        this.testJoin(64 * MB);
+    }
+
+    @Test
+    public void testJoinOverBudget() {
+        // Split the partitions and read the ids in rounds
+        this.testJoin(1024L);
+    }
+
+    @Test
+    public void testJoinEmptyGraph() {
+        SpilledJsonGraph graph = this.graph(MB);
+        List<JsonGraph> partitions = new ArrayList<>();
+        graph.join(partitions::add);
+        Assert.assertTrue(partitions.isEmpty());
+    }
+
+    private void testJoin(long budget) {
+        JsonGraph expected = new JsonGraph(16);
+        SpilledJsonGraph graph = this.graph(budget);
+        List<Vertex> vertices = vertices(300);
+        for (Vertex vertex : vertices) {
+            expected.put(vertex);
+            graph.put(vertex);
+        }
+        for (Edge edge : edges(vertices, 1000)) {
+            expected.put(edge);
+            graph.put(edge);
+        }
+
+        Map<String, String> actual = new TreeMap<>();
+        graph.join(partition -> collect(partition, actual));
+        Map<String, String> result = new TreeMap<>();
+        collect(expected, result);
+        Assert.assertEquals(result, actual);
+    }
+
+    private SpilledJsonGraph graph(long budget) {
+        if (this.spilled != null) {
+            this.spilled.close();
+        }
+        this.spilled = new SpilledJsonGraph(new File(this.root, "spill"),
+                                            new ObjectMapper(), budget);
+        return this.spilled;
+    }
+
+    /*
+     * Collect each vertex as "label:properties -> edge ids" by its id, a
+     * vertex can only appear once
+     */
+    static void collect(JsonGraph graph, Map<String, String> result) {
+        for (String table : graph.tables()) {
+            for (JsonVertex vertex : graph.table(table).values()) {
+                String key = vertex.getId().toString();
+                Assert.assertFalse(result.containsKey(key));
+                result.put(key, describe(vertex));
+            }
+        }
+    }
+
+    static String describe(JsonVertex vertex) {
+        List<String> edges = new ArrayList<>();
+        for (JsonEdge edge : vertex.getEdges()) {
+            edges.add(edge.getId() + "(" + edge.getLabel() + "," +
+                      edge.getSource() + "," + edge.getTarget() + "," +
+                      edge.properties() + ")");
+        }
+        Collections.sort(edges);
+        return vertex.getLabel() + ":" + vertex.properties() + " -> " + edges;
+    }
+
+    /*
+     * The vertices of number and string ids in two labels
+     */
+    static List<Vertex> vertices(int count) {
+        List<Vertex> vertices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Vertex vertex;
+            if (i % 2 == 0) {
+                vertex = new Vertex("person");
+                vertex.id(i);
+                vertex.property("age", i % 50);
+            } else {
+                vertex = new Vertex("software");
+                vertex.id(i + ":software");
+                vertex.property("name", "s" + i);
+            }
+            vertices.add(vertex);
+        }
+        return vertices;
+    }
+
+    /*
+     * The edges among the vertices, including self-loops and the ones
+     * whose source or target vertex doesn't exist
+     */
+    static List<Edge> edges(List<Vertex> vertices, int count) {
+        Random random = new Random(20201017L);
+        List<Edge> edges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Vertex source = vertices.get(random.nextInt(vertices.size()));
+            Vertex target = i % 20 == 0 ? source :
+                            vertices.get(random.nextInt(vertices.size()));
+            Edge edge = new Edge(i % 3 == 0 ? "created" : "knows");
+            edge.id("e" + i);
+            edge.sourceLabel(source.label());
+            edge.sourceId(source.id());
+            edge.targetLabel(target.label());
+            edge.targetId(target.id());
+            if (i % 37 == 1) {
+                edge.sourceId(-i);
+            } else if (i % 41 == 0) {
+                edge.targetId("missing" + i);
+            }
+            edge.property("weight", i);
+            edges.add(edge);
+        }
+        return edges;
+    }
+}